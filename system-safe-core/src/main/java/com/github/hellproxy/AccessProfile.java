@@ -0,0 +1,135 @@
+package com.github.hellproxy;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.String.format;
+
+/**
+ * Records whether a single test context read or wrote System Properties, and which keys it accessed. Threads spawned by
+ * the test, and tasks it wraps, record to the same profile.
+ *
+ * @author Harry Dent
+ * @see PropertiesProfiler
+ * @since 1.1
+ */
+final class AccessProfile {
+
+    /**
+     * The version of the binary format written by {@link #writeTo(DataOutput)}, which prefixes every record.
+     */
+    private static final byte VERSION = 1;
+
+    private static final byte READ = 1;
+    private static final byte WRITTEN = 2;
+
+    private final String id;
+    private final Set<String> readKeys = ConcurrentHashMap.newKeySet();
+    private final Set<String> writtenKeys = ConcurrentHashMap.newKeySet();
+    private volatile boolean read;
+    private volatile boolean written;
+
+    /**
+     * @param id the unique id of the test context.
+     */
+    AccessProfile(final String id) {
+        this.id = id;
+    }
+
+    /**
+     * Records an access of the whole of the System Properties, such as an iteration over them.
+     *
+     * @param write whether the properties were written to.
+     */
+    void record(final boolean write) {
+        if (write) {
+            if (!written) written = true;
+        } else {
+            if (!read) read = true;
+        }
+    }
+
+    /**
+     * Records an access of a single System Property.
+     *
+     * @param key   the key of the property.
+     * @param write whether the property was written to.
+     */
+    void record(final Object key, final boolean write) {
+        record(write);
+        (write ? writtenKeys : readKeys).add(String.valueOf(key));
+    }
+
+    String getId() {
+        return id;
+    }
+
+    boolean isRead() {
+        return read;
+    }
+
+    boolean isWritten() {
+        return written;
+    }
+
+    Set<String> getReadKeys() {
+        return readKeys;
+    }
+
+    Set<String> getWrittenKeys() {
+        return writtenKeys;
+    }
+
+    /**
+     * Writes this profile as a single, self-contained record.
+     *
+     * @param output the output to write to.
+     * @throws IOException if the record cannot be written.
+     */
+    void writeTo(final DataOutput output) throws IOException {
+        output.writeByte(VERSION);
+        output.writeUTF(id);
+        output.writeByte((read ? READ : 0) | (written ? WRITTEN : 0));
+        writeKeys(output, readKeys);
+        writeKeys(output, writtenKeys);
+    }
+
+    /**
+     * Reads a profile that was written by {@link #writeTo(DataOutput)}.
+     *
+     * @param input the input to read from.
+     * @return the profile that was read.
+     * @throws IOException if the record cannot be read, or was written in an unsupported format.
+     */
+    static AccessProfile readFrom(final DataInput input) throws IOException {
+        var version = input.readByte();
+        if (version != VERSION) throw new IOException(format("Unsupported profile record version %d", version));
+
+        var profile = new AccessProfile(input.readUTF());
+        var flags = input.readByte();
+        profile.read = (flags & READ) != 0;
+        profile.written = (flags & WRITTEN) != 0;
+        readKeys(input, profile.readKeys);
+        readKeys(input, profile.writtenKeys);
+        return profile;
+    }
+
+    private static void writeKeys(final DataOutput output, final Collection<String> keys) throws IOException {
+        var snapshot = keys.toArray(new String[0]);
+        output.writeInt(snapshot.length);
+        for (var key : snapshot) {
+            output.writeUTF(key);
+        }
+    }
+
+    private static void readKeys(final DataInput input, final Collection<String> keys) throws IOException {
+        var count = input.readInt();
+        for (var i = 0; i < count; i++) {
+            keys.add(input.readUTF());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.hellproxy;
+
+/**
+ * The contextual state of a thread, captured so that it can be installed on another thread for the duration of a task.
+ * The captured state inherits from the thread that captured it, in the same way that a spawned child thread would.
+ *
+ * @author Harry Dent
+ * @see SystemSafe#wrap(Runnable)
+ * @since 1.1
+ */
+final class CapturedContext {
+
+    private final PropertiesNode properties;
+    private final PropertiesNode environment;
+    private final PropertiesNode defaults;
+    private final OutputNode output;
+
+    private CapturedContext(final PropertiesNode properties,
+                            final PropertiesNode environment,
+                            final PropertiesNode defaults,
+                            final OutputNode output) {
+        this.properties = properties;
+        this.environment = environment;
+        this.defaults = defaults;
+        this.output = output;
+    }
+
+    /**
+     * Captures the state of the current thread.
+     *
+     * @return a new {@code CapturedContext} that inherits from the current thread.
+     */
+    static CapturedContext capture() {
+        return new CapturedContext(
+                PropertiesAdapter.inheritProperties(),
+                SystemEnvironment.inheritEnvironment(),
+                SystemDefaults.inheritDefaults(),
+                SystemOutput.inheritOutput());
+    }
+
+    /**
+     * Creates a clean context, as that of a thread spawned outside of any test context.
+     *
+     * @return a new {@code CapturedContext} that inherits from nothing.
+     */
+    static CapturedContext clean() {
+        return new CapturedContext(
+                PropertiesAdapter.cleanProperties(),
+                SystemEnvironment.cleanEnvironment(),
+                SystemDefaults.cleanDefaults(),
+                SystemOutput.cleanOutput());
+    }
+
+    /**
+     * Installs this context on the current thread.
+     *
+     * @return the context that the current thread had before, which should be installed again afterwards.
+     */
+    CapturedContext install() {
+        return new CapturedContext(
+                PropertiesAdapter.swapProperties(properties),
+                SystemEnvironment.swapEnvironment(environment),
+                SystemDefaults.swapDefaults(defaults),
+                SystemOutput.swapOutput(output));
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.hellproxy;
+
+import java.lang.annotation.*;
+
+/**
+ * Contains the {@link ClearSystemProperty} annotations repeated on a test class or test method.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+@Inherited
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface ClearSystemProperties {
+
+    /**
+     * @return the repeated annotations.
+     */
+    ClearSystemProperty[] value();
+}
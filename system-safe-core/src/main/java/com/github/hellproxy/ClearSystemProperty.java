@@ -0,0 +1,25 @@
+package com.github.hellproxy;
+
+import java.lang.annotation.*;
+
+/**
+ * Removes a System Property for the annotated test class or test method. Properties removed on a test class are absent
+ * for every test in it, unless a test method sets them again with {@link SystemProperty}.
+ *
+ * @author Harry Dent
+ * @see SystemProperty
+ * @see SystemSafeExtension
+ * @since 1.1
+ */
+@Inherited
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Repeatable(ClearSystemProperties.class)
+public @interface ClearSystemProperty {
+
+    /**
+     * @return the key of the System Property to remove.
+     */
+    String key();
+}
@@ -0,0 +1,462 @@
+package com.github.hellproxy;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static java.util.Collections.enumeration;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@code FrozenProperties} is an immutable, compact copy of a {@link Properties} instance. Entries are held in an
+ * open-addressed table of plain arrays, along with each key's precomputed hash, so reads never take a lock. Every
+ * method that would modify the properties throws an {@link UnsupportedOperationException} instead.
+ * <p>
+ * Used to hold the initial JVM System Properties, which every properties tree shares as its base.
+ *
+ * @author Harry Dent
+ * @see SystemSafeExtension
+ * @since 1.1
+ */
+public final class FrozenProperties extends Properties {
+
+    private final Object[] keys;
+    private final Object[] values;
+    private final int[] hashes;
+    private final int size;
+    private final Map<Object, Object> view = new View();
+
+    private FrozenProperties(final List<Map.Entry<Object, Object>> entries) {
+        var capacity = Integer.highestOneBit(Math.max(entries.size(), 1) * 2) << 1;
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+        this.hashes = new int[capacity];
+        this.size = entries.size();
+
+        for (var entry : entries) {
+            var hash = hash(entry.getKey());
+            var index = hash & (capacity - 1);
+            while (keys[index] != null) {
+                index = (index + 1) & (capacity - 1);
+            }
+            keys[index] = entry.getKey();
+            values[index] = entry.getValue();
+            hashes[index] = hash;
+        }
+    }
+
+    /**
+     * Copies the current entries of the supplied map, such as a {@link Properties} instance or the System environment.
+     * Defaults of a {@code Properties} instance are not copied.
+     *
+     * @param properties the map to copy.
+     * @return a new {@code FrozenProperties} instance with the same entries as {@code properties}.
+     */
+    public static FrozenProperties copyOf(final Map<?, ?> properties) {
+        List<Map.Entry<Object, Object>> entries = new ArrayList<>();
+        for (var entry : properties.entrySet()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+        }
+        return new FrozenProperties(entries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getProperty(String key) {
+        var value = get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Enumeration<Object> keys() {
+        return enumeration(keySet());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Enumeration<Object> elements() {
+        return enumeration(values());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(Object value) {
+        return containsValue(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsValue(Object value) {
+        requireNonNull(value);
+        for (var candidate : values) {
+            if (value.equals(candidate)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object get(Object key) {
+        var index = indexOf(key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object put(Object key, Object value) {
+        throw unsupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object remove(Object key) {
+        throw unsupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void putAll(Map<?, ?> t) {
+        throw unsupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        throw unsupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return view.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Object> keySet() {
+        return view.keySet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<Object> values() {
+        return view.values();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        return view.entrySet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o == this || view.equals(o);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return view.hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        var value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEach(BiConsumer<? super Object, ? super Object> action) {
+        requireNonNull(action);
+        for (var i = 0; i < keys.length; i++) {
+            if (keys[i] != null) action.accept(keys[i], values[i]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+        throw unsupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object putIfAbsent(Object key, Object value) {
+        throw unsupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(Object key, Object value) {
+        throw unsupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean replace(Object key, Object oldValue, Object newValue) {
+        throw unsupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object replace(Object key, Object value) {
+        throw unsupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object computeIfAbsent(Object key, Function<? super Object, ?> mappingFunction) {
+        throw unsupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object computeIfPresent(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        throw unsupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object compute(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        throw unsupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object merge(Object key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        throw unsupported();
+    }
+
+    /**
+     * {@inheritDoc}
+     * The table of a {@code FrozenProperties} instance is sized once, when it is created.
+     */
+    @Override
+    protected void rehash() {
+        /* no-op */
+    }
+
+    /**
+     * {@inheritDoc}
+     * The clone is a plain, modifiable {@link Properties} instance.
+     */
+    @Override
+    public Object clone() {
+        var clone = new Properties();
+        forEach(clone::put);
+        return clone;
+    }
+
+    private int indexOf(final Object key) {
+        var hash = hash(key);
+        var mask = keys.length - 1;
+        for (var index = hash & mask; ; index = (index + 1) & mask) {
+            var candidate = keys[index];
+            if (candidate == null) return -1;
+            if (hashes[index] == hash && (candidate == key || candidate.equals(key))) return index;
+        }
+    }
+
+    private static int hash(final Object key) {
+        var hash = key.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("Frozen properties cannot be modified");
+    }
+
+    /**
+     * The read-only {@code Map} view backing the collection views of a {@code FrozenProperties} instance.
+     */
+    private class View extends AbstractMap<Object, Object> {
+
+        private final Set<Map.Entry<Object, Object>> entrySet = new AbstractSet<>() {
+
+            @Override
+            public Iterator<Map.Entry<Object, Object>> iterator() {
+                return new Iterator<>() {
+
+                    private int index = advance(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < keys.length;
+                    }
+
+                    @Override
+                    public Map.Entry<Object, Object> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        var entry = new SimpleImmutableEntry<>(keys[index], values[index]);
+                        index = advance(index + 1);
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Map.Entry)) return false;
+                var entry = (Map.Entry<?, ?>) o;
+                var value = FrozenProperties.this.get(entry.getKey());
+                return value != null && value.equals(entry.getValue());
+            }
+        };
+
+        private final Set<Object> keySet = new AbstractSet<>() {
+
+            @Override
+            public Iterator<Object> iterator() {
+                return new Iterator<>() {
+
+                    private int index = advance(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < keys.length;
+                    }
+
+                    @Override
+                    public Object next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        var key = keys[index];
+                        index = advance(index + 1);
+                        return key;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return indexOf(o) >= 0;
+            }
+        };
+
+        @Override
+        public Set<Map.Entry<Object, Object>> entrySet() {
+            return entrySet;
+        }
+
+        @Override
+        public Set<Object> keySet() {
+            return keySet;
+        }
+
+        @Override
+        public Object get(Object key) {
+            return FrozenProperties.this.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexOf(key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        private int advance(final int from) {
+            var index = from;
+            while (index < keys.length && keys[index] == null) {
+                index++;
+            }
+            return index;
+        }
+    }
+}
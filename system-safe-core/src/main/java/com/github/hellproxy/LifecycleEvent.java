@@ -0,0 +1,45 @@
+package com.github.hellproxy;
+
+import jdk.jfr.*;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * A JFR event recording how long one of the {@link SystemSafeExtension} callbacks took to set up or tear down a test
+ * context. Disabled by default, like every other SystemSafe event.
+ *
+ * @author Harry Dent
+ * @see SystemSafeExtension
+ * @since 1.1
+ */
+@Name("com.github.hellproxy.Lifecycle")
+@Label("SystemSafe Lifecycle Callback")
+@Category("SystemSafe")
+@Description("Setup or teardown of a test context by the SystemSafe extension")
+@Enabled(false)
+@StackTrace(false)
+final class LifecycleEvent extends Event {
+
+    @Label("Callback")
+    String callback;
+
+    @Label("Test")
+    @Description("The unique id of the test context")
+    String test;
+
+    /**
+     * Starts timing a callback. The event is only filled in if it is enabled.
+     *
+     * @param callback the name of the callback, such as {@code beforeEach}.
+     * @param context  the test context that the callback was invoked for.
+     * @return an event to {@link #commit()} once the callback has finished.
+     */
+    static LifecycleEvent begin(final String callback, final ExtensionContext context) {
+        var event = new LifecycleEvent();
+        if (event.isEnabled()) {
+            event.callback = callback;
+            event.test = context.getUniqueId();
+            event.begin();
+        }
+        return event;
+    }
+}
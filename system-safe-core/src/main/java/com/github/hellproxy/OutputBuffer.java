@@ -0,0 +1,137 @@
+package com.github.hellproxy;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.ref.SoftReference;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import static java.lang.String.format;
+import static java.util.Objects.checkFromIndexSize;
+
+/**
+ * An {@link OutputStream} that records everything written to it, and also passes it on to one of the original standard
+ * streams so that output still reaches the console.
+ * <p>
+ * Only the first bytes written to a buffer are recorded, up to its limit, so that a test that writes a lot of output
+ * does not hold on to all of it until the test ends. Output beyond the limit is still passed on to the original stream,
+ * and the recorded output ends with a note of how many bytes were left out.
+ * <p>
+ * The byte arrays backing each buffer are pooled. A released buffer hands its array back to the pool, so that the next
+ * test to capture output starts with an array that has already grown to fit, rather than growing a new one line by
+ * line. The pool only holds about as many arrays as there are tests capturing both streams at once, and only through
+ * soft references, so the garbage collector can still take them back from a suite that needs the memory. Anything
+ * written to a buffer after it has been released is only passed on to the original stream.
+ *
+ * @author Harry Dent
+ * @see OutputCapture
+ * @since 1.1
+ */
+final class OutputBuffer extends OutputStream {
+
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+    private static final int MAX_POOLED_CAPACITY = 1024 * 1024;
+    private static final Queue<SoftReference<byte[]>> POOL =
+            new ArrayBlockingQueue<>(2 * Runtime.getRuntime().availableProcessors());
+    private static final String TRUNCATED = "%n[SystemSafe: %d more bytes were not captured, over the limit of %d]%n";
+
+    private final PrintStream original;
+    private final int limit;
+    private byte[] bytes;
+    private int count;
+    private long truncated;
+
+    /**
+     * @param original the stream to pass everything written to this buffer on to.
+     * @param limit    the most bytes to record.
+     */
+    OutputBuffer(final PrintStream original, final int limit) {
+        this.original = original;
+        this.limit = limit;
+        this.bytes = acquire();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(int b) {
+        synchronized (this) {
+            if (bytes != null && count < limit) {
+                ensureCapacity(count + 1);
+                bytes[count++] = (byte) b;
+            } else if (bytes != null) {
+                truncated++;
+            }
+        }
+        original.write(b);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(byte[] b, int off, int len) {
+        checkFromIndexSize(off, len, b.length);
+        synchronized (this) {
+            if (bytes != null) {
+                var recorded = Math.min(len, limit - count);
+                ensureCapacity(count + recorded);
+                System.arraycopy(b, off, bytes, count, recorded);
+                count += recorded;
+                truncated += len - recorded;
+            }
+        }
+        original.write(b, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {
+        original.flush();
+    }
+
+    /**
+     * Decodes everything that has been recorded by this buffer since it was created.
+     *
+     * @param charset the charset to decode the recorded bytes with.
+     * @return the recorded output, followed by a note of how many bytes were left out if the limit was reached, or an
+     * empty string if this buffer has been released.
+     */
+    synchronized String toString(final Charset charset) {
+        if (bytes == null) return "";
+
+        var recorded = new String(bytes, 0, count, charset);
+        return truncated > 0 ? recorded + format(TRUNCATED, truncated, limit) : recorded;
+    }
+
+    /**
+     * Discards the recorded output, and hands the array that held it back to the pool.
+     */
+    synchronized void release() {
+        if (bytes == null) return;
+
+        if (bytes.length <= MAX_POOLED_CAPACITY) POOL.offer(new SoftReference<>(bytes));
+        bytes = null;
+        count = 0;
+        truncated = 0;
+    }
+
+    private void ensureCapacity(final int minCapacity) {
+        if (minCapacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.min(Math.max(bytes.length << 1, minCapacity), limit));
+        }
+    }
+
+    private static byte[] acquire() {
+        for (var pooled = POOL.poll(); pooled != null; pooled = POOL.poll()) {
+            var bytes = pooled.get();
+            if (bytes != null) return bytes;
+        }
+        return new byte[INITIAL_CAPACITY];
+    }
+}
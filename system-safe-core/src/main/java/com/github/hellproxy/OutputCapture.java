@@ -0,0 +1,116 @@
+package com.github.hellproxy;
+
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+
+/**
+ * The standard output and standard error streams of a single test context. Each stream records what is written to it
+ * in an {@link OutputBuffer}, as well as passing it on to the original stream, in the original stream's encoding.
+ * <p>
+ * Most tests never write any output, so neither stream, nor the buffer behind it, is created until something is first
+ * written to it.
+ *
+ * @author Harry Dent
+ * @see SystemOutput
+ * @since 1.1
+ */
+final class OutputCapture {
+
+    private final Stream out;
+    private final Stream err;
+
+    /**
+     * @param originalOut the original standard output stream.
+     * @param outCharset  the charset that the original standard output stream encodes characters with.
+     * @param originalErr the original standard error stream.
+     * @param errCharset  the charset that the original standard error stream encodes characters with.
+     * @param limit       the most bytes to capture from each stream.
+     */
+    OutputCapture(final PrintStream originalOut,
+                  final Charset outCharset,
+                  final PrintStream originalErr,
+                  final Charset errCharset,
+                  final int limit) {
+        this.out = new Stream(originalOut, outCharset, limit);
+        this.err = new Stream(originalErr, errCharset, limit);
+    }
+
+    /**
+     * @return the standard output stream of this test context.
+     */
+    PrintStream getOut() {
+        return out.get();
+    }
+
+    /**
+     * @return the standard error stream of this test context.
+     */
+    PrintStream getErr() {
+        return err.get();
+    }
+
+    /**
+     * @return everything written to the standard output stream of this test context.
+     */
+    String getCapturedOut() {
+        return out.getCaptured();
+    }
+
+    /**
+     * @return everything written to the standard error stream of this test context.
+     */
+    String getCapturedErr() {
+        return err.getCaptured();
+    }
+
+    /**
+     * Discards the captured output, and returns the buffers that held it to the pool.
+     */
+    void release() {
+        out.release();
+        err.release();
+    }
+
+    /**
+     * One of the streams of a test context, which is created when it is first asked for. Once released, the original
+     * stream is used instead, so that nothing is buffered for a test context that has ended.
+     */
+    private static final class Stream {
+
+        private final PrintStream original;
+        private final Charset charset;
+        private final int limit;
+        private volatile PrintStream stream;
+        private OutputBuffer buffer;
+        private boolean released;
+
+        private Stream(final PrintStream original, final Charset charset, final int limit) {
+            this.original = original;
+            this.charset = charset;
+            this.limit = limit;
+        }
+
+        private PrintStream get() {
+            var current = stream;
+            return current != null ? current : create();
+        }
+
+        private synchronized PrintStream create() {
+            if (released) return original;
+            if (stream == null) {
+                buffer = new OutputBuffer(original, limit);
+                stream = new PrintStream(buffer, true, charset);
+            }
+            return stream;
+        }
+
+        private synchronized String getCaptured() {
+            return buffer != null ? buffer.toString(charset) : "";
+        }
+
+        private synchronized void release() {
+            released = true;
+            if (buffer != null) buffer.release();
+        }
+    }
+}
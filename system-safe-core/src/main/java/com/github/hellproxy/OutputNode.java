@@ -0,0 +1,65 @@
+package com.github.hellproxy;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A node of a thread-local output tree. Has a link to its parent, and holds a nullable reference to the
+ * {@link OutputCapture} of a test context.
+ * <p>
+ * Unlike a {@link PropertiesNode}, an output node is shared with child threads rather than copied, since output written
+ * by a child thread belongs to the same test as output written by its parent. Removed nodes are skipped in the same
+ * way, and stay removed, so output nodes are walked by the same {@link TreeNode#findHead()}.
+ *
+ * @author Harry Dent
+ * @see SystemOutput
+ * @since 1.1
+ */
+final class OutputNode extends TreeNode<OutputNode> {
+
+    private final AtomicReference<OutputCapture> capture;
+
+    /**
+     * @param parent  the current head of the output tree, or {@code null} for the root of a tree.
+     * @param capture the output capture that will be held by this tree node.
+     */
+    OutputNode(final OutputNode parent, final OutputCapture capture) {
+        super(parent);
+        this.capture = new AtomicReference<>(capture);
+    }
+
+    /**
+     * Gets the first non-null output capture held by this node, or by one of its ancestors, traversing up the tree.
+     *
+     * @return an {@code OutputCapture} instance, or {@code null} if none of the nodes hold one.
+     */
+    OutputCapture getCapture() {
+        var head = getHead();
+        return head != null ? head.capture.get() : null;
+    }
+
+    /**
+     * Gets the first node to have a non-null output capture, starting with this node and traversing up through its
+     * ancestors. Every removed node that is passed on the way is linked directly to the node that is found.
+     *
+     * @return an {@code OutputNode} instance whose {@link #capture} reference is non-null, or {@code null} if one could
+     * not be found.
+     * @see TreeNode#findHead()
+     */
+    OutputNode getHead() {
+        return findHead();
+    }
+
+    @Override
+    boolean isRemoved() {
+        return capture.get() == null;
+    }
+
+    /**
+     * Removes this node from the tree, and releases the output capture it held. A removed node cannot be added back to
+     * the tree.
+     */
+    void remove() {
+        var removed = capture.getAndSet(null);
+        if (removed != null) removed.release();
+    }
+}
@@ -0,0 +1,380 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ExtensionContext.Namespace;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.String.format;
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.comparingLong;
+import static org.junit.jupiter.api.extension.ExtensionContext.Namespace.create;
+
+/**
+ * Reports how much of each test context's runtime is spent setting it up and tearing it down in the
+ * {@link SystemSafeExtension}, so that the test classes that SystemSafe slows down the most can be found. The report is
+ * configured with JUnit configuration parameters:
+ * <ul>
+ *     <li>{@value #ENABLED_PARAMETER}: {@code true} to report the overhead of the tests that run, or {@code false},
+ *     the default.</li>
+ *     <li>{@value #DIRECTORY_PARAMETER}: the directory to write the report to, {@value #DEFAULT_DIRECTORY} by default,
+ *     next to the reports of other Gradle plugins such as JaCoCo.</li>
+ * </ul>
+ * Once every test has run, {@value #JSON_FILE} and {@value #CSV_FILE} are written to the directory, with a row for
+ * each test class and test method, sorted by overhead:
+ * <ul>
+ *     <li>{@code parent}: the test class that a test method, or a nested test class, belongs to.</li>
+ *     <li>{@code setUpNanos} and {@code tearDownNanos}: the time taken by {@code beforeAll} or {@code beforeEach},
+ *     and by {@code afterEach} or {@code afterAll}.</li>
+ *     <li>{@code overheadNanos}: the time taken by both, plus that of the test methods of a test class.</li>
+ *     <li>{@code runNanos}: the time from the start of the context's setup to the end of its teardown.</li>
+ *     <li>{@code bytes}: the estimated size of the System Properties that the context wrote to its layer, counted as
+ *     they were written.</li>
+ *     <li>{@code depth}: how many nodes deep the context's properties were in their properties tree.</li>
+ * </ul>
+ * The most expensive test classes are also printed at the end of the run.
+ *
+ * @author Harry Dent
+ * @see LifecycleEvent
+ * @since 1.1
+ */
+final class OverheadReport implements ExtensionContext.Store.CloseableResource {
+
+    static final String ENABLED_PARAMETER = "systemsafe.overhead.enabled";
+    static final String DIRECTORY_PARAMETER = "systemsafe.overhead.directory";
+    static final String DEFAULT_DIRECTORY = "build/reports/systemsafe";
+    static final String JSON_FILE = "overhead.json";
+    static final String CSV_FILE = "overhead.csv";
+
+    private static final Namespace NAMESPACE = create(OverheadReport.class);
+
+    private static final int TOP_CLASSES = 10;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final Map<String, Overhead> overheads = new ConcurrentHashMap<>();
+
+    private OverheadReport(final boolean enabled, final Path directory) {
+        this.enabled = enabled;
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the report of the current test run, creating it the first time it is asked for.
+     *
+     * @param context any context of the current test run.
+     * @return the report configured for the current test run.
+     * @throws ExtensionConfigurationException if the report is misconfigured.
+     */
+    static OverheadReport of(final ExtensionContext context) {
+        return context.getRoot().getStore(NAMESPACE).getOrComputeIfAbsent(
+                OverheadReport.class, key -> configure(context), OverheadReport.class);
+    }
+
+    /**
+     * Starts timing the setup of a test context, if the overhead of the test run it belongs to is being reported.
+     *
+     * @param context the test context.
+     * @return the time the setup started, in nanoseconds, or {@code 0} if the overhead is not being reported.
+     */
+    static long startSetUp(final ExtensionContext context) {
+        return of(context).enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Finishes timing the setup of a test context, and records the properties that the current thread was given for
+     * it.
+     *
+     * @param context the test context.
+     * @param start   the time returned by {@link #startSetUp(ExtensionContext)}.
+     */
+    static void finishSetUp(final ExtensionContext context, final long start) {
+        if (start == 0L) return;
+
+        var end = System.nanoTime();
+        var report = of(context);
+        var node = PropertiesAdapter.getNode();
+        var overhead = report.overheads.computeIfAbsent(context.getUniqueId(), id -> new Overhead(context));
+        overhead.setUp(start, end, bytesOf(node.getProperties()), node.getDepth());
+    }
+
+    /**
+     * Starts timing the teardown of a test context, after recording how much has been written to its properties
+     * since it was set up.
+     *
+     * @param context the test context.
+     * @return the time the teardown started, in nanoseconds, or {@code 0} if the overhead is not being reported.
+     */
+    static long startTearDown(final ExtensionContext context) {
+        var report = of(context);
+        if (!report.enabled) return 0L;
+
+        var overhead = report.overheads.get(context.getUniqueId());
+        if (overhead == null) return 0L;
+
+        overhead.written(bytesOf(PropertiesAdapter.getNode().getProperties()));
+        return System.nanoTime();
+    }
+
+    /**
+     * Finishes timing the teardown of a test context.
+     *
+     * @param context the test context.
+     * @param start   the time returned by {@link #startTearDown(ExtensionContext)}.
+     */
+    static void finishTearDown(final ExtensionContext context, final long start) {
+        if (start == 0L) return;
+
+        var end = System.nanoTime();
+        of(context).overheads.get(context.getUniqueId()).tearDown(start, end);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Writes the report, and prints the test classes with the highest overhead, once every test has run.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!enabled) return;
+
+        var rows = rows();
+        Files.createDirectories(directory);
+        Files.writeString(directory.resolve(JSON_FILE), json(rows));
+        Files.writeString(directory.resolve(CSV_FILE), csv(rows));
+        System.out.print(summary(rows));
+    }
+
+    /**
+     * Gets a row of the report for each test context, sorted by overhead, with the overhead of each test class
+     * including that of its test methods.
+     *
+     * @return the rows of the report.
+     */
+    private List<Row> rows() {
+        Map<String, Long> methodOverheads = new HashMap<>();
+        for (var overhead : overheads.values()) {
+            if (overhead.method && overhead.parentId != null) {
+                methodOverheads.merge(overhead.parentId, overhead.getOverheadNanos(), Long::sum);
+            }
+        }
+
+        var rows = new ArrayList<Row>();
+        for (var overhead : overheads.values()) {
+            rows.add(new Row(overhead, methodOverheads.getOrDefault(overhead.id, 0L)));
+        }
+        rows.sort(comparingLong((Row row) -> -row.overheadNanos).thenComparing(row -> row.id));
+        return rows;
+    }
+
+    private String summary(final List<Row> rows) {
+        var overheadNanos = rows.stream().filter(row -> !row.method).mapToLong(row -> row.overheadNanos).sum();
+        var summary = new StringBuilder(format(
+                "SystemSafe overhead of %d test contexts: %.1f ms, reported in %s%n",
+                rows.size(), overheadNanos / 1e6, directory));
+
+        summary.append(format("Classes with the highest overhead:%n"));
+        rows.stream()
+            .filter(row -> !row.method)
+            .sorted(comparing((Row row) -> -row.getOverheadShare()).thenComparing(row -> row.id))
+            .limit(TOP_CLASSES)
+            .forEach(row -> summary.append(format("  %s: %.1f ms of %.1f ms (%.0f%%)%n",
+                    row.id, row.overheadNanos / 1e6, row.runNanos / 1e6, row.getOverheadShare() * 100)));
+        return summary.toString();
+    }
+
+    private static String json(final List<Row> rows) {
+        var json = new StringBuilder("{\n  \"contexts\": [");
+        for (var i = 0; i < rows.size(); i++) {
+            var row = rows.get(i);
+            json.append(i > 0 ? ",\n" : "\n")
+                .append("    {\"kind\": \"").append(row.getKind())
+                .append("\", \"id\": ").append(jsonString(row.id))
+                .append(", \"parent\": ").append(row.parentId != null ? jsonString(row.parentId) : "null")
+                .append(", \"setUpNanos\": ").append(row.setUpNanos)
+                .append(", \"tearDownNanos\": ").append(row.tearDownNanos)
+                .append(", \"overheadNanos\": ").append(row.overheadNanos)
+                .append(", \"runNanos\": ").append(row.runNanos)
+                .append(", \"overheadShare\": ").append(format(Locale.ROOT, "%.4f", row.getOverheadShare()))
+                .append(", \"bytes\": ").append(row.bytes)
+                .append(", \"depth\": ").append(row.depth)
+                .append('}');
+        }
+        return json.append("\n  ]\n}\n").toString();
+    }
+
+    private static String csv(final List<Row> rows) {
+        var csv = new StringBuilder(
+                "kind,id,parent,setUpNanos,tearDownNanos,overheadNanos,runNanos,overheadShare,bytes,depth\n");
+        for (var row : rows) {
+            csv.append(row.getKind())
+               .append(',').append(csvString(row.id))
+               .append(',').append(row.parentId != null ? csvString(row.parentId) : "")
+               .append(',').append(row.setUpNanos)
+               .append(',').append(row.tearDownNanos)
+               .append(',').append(row.overheadNanos)
+               .append(',').append(row.runNanos)
+               .append(',').append(format(Locale.ROOT, "%.4f", row.getOverheadShare()))
+               .append(',').append(row.bytes)
+               .append(',').append(row.depth)
+               .append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static String jsonString(final String value) {
+        var json = new StringBuilder("\"");
+        for (var c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    private static String csvString(final String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Estimates the size of the properties written so far to the layer of a test context, which is never frozen. A
+     * frozen layer, such as that of a test replayed read-only, has never been written to.
+     */
+    private static long bytesOf(final Properties properties) {
+        if (!(properties instanceof PropertiesLayer)) return 0L;
+
+        var layer = (PropertiesLayer) properties;
+        return layer.isFrozen() ? 0L : layer.writtenBytes();
+    }
+
+    private static OverheadReport configure(final ExtensionContext context) {
+        var enabled = context.getConfigurationParameter(ENABLED_PARAMETER)
+                .map(OverheadReport::parseEnabled)
+                .orElse(false);
+        var directory = Path.of(context.getConfigurationParameter(DIRECTORY_PARAMETER).orElse(DEFAULT_DIRECTORY));
+
+        return new OverheadReport(enabled, directory);
+    }
+
+    private static boolean parseEnabled(final String enabled) {
+        switch (enabled.trim().toLowerCase(Locale.ROOT)) {
+            case "true":
+                return true;
+            case "false":
+                return false;
+            default:
+                throw new ExtensionConfigurationException(
+                        format("Unknown %s '%s', expected true or false", ENABLED_PARAMETER, enabled));
+        }
+    }
+
+    /**
+     * The overhead of a single test context, recorded as its callbacks run. The callbacks of a test context may run on
+     * different threads, so each one is recorded while holding its lock.
+     */
+    private static final class Overhead {
+
+        private final String id;
+        private final String parentId;
+        private final boolean method;
+        private long start;
+        private long setUpNanos;
+        private long tearDownNanos;
+        private long end;
+        private boolean tornDown;
+        private long startBytes;
+        private long bytes;
+        private int depth;
+
+        private Overhead(final ExtensionContext context) {
+            this.id = context.getUniqueId();
+            this.parentId = classOf(context).map(ExtensionContext::getUniqueId).orElse(null);
+            this.method = context.getTestMethod().isPresent();
+        }
+
+        /**
+         * Gets the context of the test class that a test context belongs to, skipping the containers of repeated and
+         * parameterized tests, which have no callbacks of their own.
+         */
+        private static Optional<ExtensionContext> classOf(final ExtensionContext context) {
+            var parent = context.getParent();
+            while (parent.isPresent() && parent.get().getTestMethod().isPresent()) {
+                parent = parent.get().getParent();
+            }
+            return parent;
+        }
+
+        private synchronized void setUp(final long start, final long end, final long bytes, final int depth) {
+            this.start = start;
+            this.setUpNanos = end - start;
+            this.startBytes = bytes;
+            this.depth = depth;
+        }
+
+        private synchronized void written(final long bytes) {
+            this.bytes = bytes - startBytes;
+        }
+
+        private synchronized void tearDown(final long start, final long end) {
+            this.tearDownNanos = end - start;
+            this.end = end;
+            this.tornDown = true;
+        }
+
+        private synchronized long getOverheadNanos() {
+            return setUpNanos + tearDownNanos;
+        }
+    }
+
+    /**
+     * A row of the report, holding a consistent copy of a test context's {@link Overhead}.
+     */
+    private static final class Row {
+
+        private final String id;
+        private final String parentId;
+        private final boolean method;
+        private final long setUpNanos;
+        private final long tearDownNanos;
+        private final long overheadNanos;
+        private final long runNanos;
+        private final long bytes;
+        private final int depth;
+
+        private Row(final Overhead overhead, final long methodOverheadNanos) {
+            synchronized (overhead) {
+                this.id = overhead.id;
+                this.parentId = overhead.parentId;
+                this.method = overhead.method;
+                this.setUpNanos = overhead.setUpNanos;
+                this.tearDownNanos = overhead.tearDownNanos;
+                this.overheadNanos = overhead.setUpNanos + overhead.tearDownNanos + methodOverheadNanos;
+                this.runNanos = overhead.tornDown ? overhead.end - overhead.start : 0L;
+                this.bytes = overhead.bytes;
+                this.depth = overhead.depth;
+            }
+        }
+
+        String getKind() {
+            return method ? "method" : "class";
+        }
+
+        double getOverheadShare() {
+            return runNanos > 0L ? (double) overheadNanos / runNanos : 0.0;
+        }
+    }
+}
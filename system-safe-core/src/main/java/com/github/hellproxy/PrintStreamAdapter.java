@@ -0,0 +1,288 @@
+package com.github.hellproxy;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * {@code PrintStreamAdapter} replaces {@code System.out} or {@code System.err}. Like the {@link PropertiesAdapter},
+ * it holds no state of its own, and passes every call on to a stream that depends on the thread the call was made in.
+ * <p>
+ * None of the adapter's methods lock on the adapter itself, so tests running in parallel only ever contend for their
+ * own streams.
+ *
+ * @author Harry Dent
+ * @see SystemOutput
+ * @since 1.1
+ */
+final class PrintStreamAdapter extends PrintStream {
+
+    private final Supplier<PrintStream> stream;
+
+    /**
+     * @param original the stream being replaced.
+     * @param stream   supplies the stream of the current thread.
+     */
+    PrintStreamAdapter(final PrintStream original, final Supplier<PrintStream> stream) {
+        super(original);
+        this.stream = stream;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {
+        stream.get().flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only flushes the stream of the current thread. Closing the capture of a test context would silently drop
+     * everything the test writes afterwards, including what is passed on to the console, and closing the original
+     * stream would close it for every other thread.
+     */
+    @Override
+    public void close() {
+        stream.get().flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean checkError() {
+        return stream.get().checkError();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(int b) {
+        stream.get().write(b);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(byte[] buf, int off, int len) {
+        stream.get().write(buf, off, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(boolean b) {
+        stream.get().print(b);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(char c) {
+        stream.get().print(c);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(int i) {
+        stream.get().print(i);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(long l) {
+        stream.get().print(l);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(float f) {
+        stream.get().print(f);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(double d) {
+        stream.get().print(d);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(char[] s) {
+        stream.get().print(s);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(String s) {
+        stream.get().print(s);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void print(Object obj) {
+        stream.get().print(obj);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println() {
+        stream.get().println();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(boolean x) {
+        stream.get().println(x);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(char x) {
+        stream.get().println(x);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(int x) {
+        stream.get().println(x);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(long x) {
+        stream.get().println(x);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(float x) {
+        stream.get().println(x);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(double x) {
+        stream.get().println(x);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(char[] x) {
+        stream.get().println(x);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(String x) {
+        stream.get().println(x);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void println(Object x) {
+        stream.get().println(x);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PrintStream printf(String format, Object... args) {
+        stream.get().printf(format, args);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PrintStream printf(Locale l, String format, Object... args) {
+        stream.get().printf(l, format, args);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PrintStream format(String format, Object... args) {
+        stream.get().format(format, args);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PrintStream format(Locale l, String format, Object... args) {
+        stream.get().format(l, format, args);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PrintStream append(CharSequence csq) {
+        stream.get().append(csq);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PrintStream append(CharSequence csq, int start, int end) {
+        stream.get().append(csq, start, end);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PrintStream append(char c) {
+        stream.get().append(c);
+        return this;
+    }
+}
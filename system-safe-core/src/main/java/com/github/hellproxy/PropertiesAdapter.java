@@ -7,12 +7,19 @@ import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
+import static java.util.Collections.emptyMap;
 import static java.util.Objects.requireNonNull;
 
 /**
  * {@code @PropertiesAdapter} replaces the {@link Properties} instance in System Properties. It delegates interactions
  * with System Properties to a different {@link ThreadLocalProperties} object, depending on what thread the interaction
  * happened in.
+ * <p>
+ * None of the adapter's methods lock on the adapter itself. Each call only touches the calling thread's properties, so
+ * there is no reason for threads to queue on a single, JVM-wide monitor.
+ * <p>
+ * Reads and writes of single properties are recorded as {@link PropertyAccessEvent}s, when that JFR event is enabled,
+ * and in the {@link AccessProfile} of the current test when a {@link PropertiesProfiler} is recording.
  *
  * @author Harry Dent
  * @since 1.0
@@ -26,9 +33,10 @@ public class PropertiesAdapter extends Properties {
      * {@code System.getProperties()} until further interactions with the same properties tree instance.
      *
      * @param properties the {@link Properties} to add to the properties tree.
+     * @return the {@link PropertiesNode} that now holds {@code properties}.
      */
-    public static void addProperties(final Properties properties) {
-        THREAD_LOCAL_PROPERTIES.addProperties(properties);
+    public static PropertiesNode addProperties(final Properties properties) {
+        return THREAD_LOCAL_PROPERTIES.addProperties(properties);
     }
 
     /**
@@ -39,28 +47,137 @@ public class PropertiesAdapter extends Properties {
         THREAD_LOCAL_PROPERTIES.removeProperties();
     }
 
+    /**
+     * Releases the current thread-local properties tree head at the end of a test context, along with the nodes of the
+     * threads and tasks that inherited from it.
+     *
+     * @see ThreadLocalProperties#releaseProperties()
+     */
+    static void releaseProperties() {
+        THREAD_LOCAL_PROPERTIES.releaseProperties();
+    }
+
+    /**
+     * Adds a snapshot of the current thread's properties to the thread-local properties tree, with a precomputed
+     * overlay of changes applied on top.
+     *
+     * @param overlay the changes to apply, created with {@link PropertiesLayer#overlayOf}.
+     * @return the {@link PropertiesNode} that now holds the overlaid properties.
+     */
+    static PropertiesNode addOverlay(final Map<Object, Object> overlay) {
+        var properties = PropertiesLayer.frozenOver(THREAD_LOCAL_PROPERTIES.getProperties(), overlay);
+        return THREAD_LOCAL_PROPERTIES.addProperties(properties);
+    }
+
+    /**
+     * Writes a precomputed overlay of changes to the current thread's properties, resolving them only once. Each
+     * property set or cleared is recorded as a write, just as if it had been written on its own.
+     *
+     * @param overlay the changes to apply, created with {@link PropertiesLayer#overlayOf}.
+     */
+    static void applyOverlay(final Map<Object, Object> overlay) {
+        for (var key : overlay.keySet()) {
+            recordAccess(key, true);
+        }
+        PropertiesLayer.applyTo(getWritableProperties(), overlay);
+    }
+
+    /**
+     * Opens a scope of an empty overlay on the current thread. Nothing is added to the properties tree until the
+     * properties are first written to within the scope, so a scope that only reads them allocates nothing.
+     *
+     * @see #closeEmptyScope()
+     */
+    static void openEmptyScope() {
+        THREAD_LOCAL_PROPERTIES.get().deferScope();
+    }
+
+    /**
+     * Closes the innermost scope of an empty overlay on the current thread, removing its node from the properties tree
+     * if the properties were written to within it.
+     *
+     * @see #openEmptyScope()
+     */
+    static void closeEmptyScope() {
+        var node = THREAD_LOCAL_PROPERTIES.get();
+        if (!node.takeDeferredScope() && node.isOpenedScope()) removeProperties(node);
+    }
+
+    /**
+     * Removes a specific node from the current thread's properties tree.
+     *
+     * @param node the node to remove.
+     * @see ThreadLocalProperties#removeProperties(PropertiesNode)
+     */
+    static void removeProperties(final PropertiesNode node) {
+        THREAD_LOCAL_PROPERTIES.removeProperties(node);
+    }
+
+    /**
+     * Gets the current thread's properties tree node.
+     *
+     * @return the node that the current thread is using.
+     */
+    static PropertiesNode getNode() {
+        return THREAD_LOCAL_PROPERTIES.get();
+    }
+
+    /**
+     * Creates a properties node for a task that is going to run on another thread, so that it can be installed with
+     * {@link #swapProperties(PropertiesNode)} when the task runs.
+     *
+     * @return a new {@link PropertiesNode} that inherits the current thread's properties.
+     */
+    static PropertiesNode inheritProperties() {
+        return THREAD_LOCAL_PROPERTIES.inherit();
+    }
+
+    /**
+     * Replaces the current thread's properties tree node.
+     *
+     * @param node the node that the current thread should use from now on.
+     * @return the node that the current thread was using before.
+     */
+    static PropertiesNode swapProperties(final PropertiesNode node) {
+        var previous = THREAD_LOCAL_PROPERTIES.get();
+        THREAD_LOCAL_PROPERTIES.set(node);
+        return previous;
+    }
+
+    /**
+     * Creates a clean properties node, which falls back to the properties shared by threads outside of any test
+     * context.
+     *
+     * @return a new {@link PropertiesNode}, not yet installed on any thread.
+     * @see #swapProperties(PropertiesNode)
+     */
+    static PropertiesNode cleanProperties() {
+        return THREAD_LOCAL_PROPERTIES.initialValue();
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized Object setProperty(String key, String value) {
-        return getLocalProperties().setProperty(key, value);
+    public Object setProperty(String key, String value) {
+        recordAccess(key, true);
+        return getWritableLocalProperties().setProperty(key, value);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized void load(Reader reader) throws IOException {
-        getLocalProperties().load(reader);
+    public void load(Reader reader) throws IOException {
+        getWritableLocalProperties().load(reader);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized void load(InputStream inStream) throws IOException {
-        getLocalProperties().load(inStream);
+    public void load(InputStream inStream) throws IOException {
+        getWritableLocalProperties().load(inStream);
     }
 
     /**
@@ -91,8 +208,8 @@ public class PropertiesAdapter extends Properties {
      * {@inheritDoc}
      */
     @Override
-    public synchronized void loadFromXML(InputStream in) throws IOException {
-        getLocalProperties().loadFromXML(in);
+    public void loadFromXML(InputStream in) throws IOException {
+        getWritableLocalProperties().loadFromXML(in);
     }
 
     /**
@@ -124,6 +241,7 @@ public class PropertiesAdapter extends Properties {
      */
     @Override
     public String getProperty(String key) {
+        recordAccess(key, false);
         return getLocalProperties().getProperty(key);
     }
 
@@ -132,6 +250,7 @@ public class PropertiesAdapter extends Properties {
      */
     @Override
     public String getProperty(String key, String defaultValue) {
+        recordAccess(key, false);
         return getLocalProperties().getProperty(key, defaultValue);
     }
 
@@ -220,6 +339,7 @@ public class PropertiesAdapter extends Properties {
      */
     @Override
     public boolean containsKey(Object key) {
+        recordAccess(key, false);
         return getLocalProperties().containsKey(key);
     }
 
@@ -228,6 +348,7 @@ public class PropertiesAdapter extends Properties {
      */
     @Override
     public Object get(Object key) {
+        recordAccess(key, false);
         return getLocalProperties().get(key);
     }
 
@@ -235,39 +356,44 @@ public class PropertiesAdapter extends Properties {
      * {@inheritDoc}
      */
     @Override
-    public synchronized Object put(Object key, Object value) {
-        return getLocalProperties().put(key, value);
+    public Object put(Object key, Object value) {
+        recordAccess(key, true);
+        return getWritableLocalProperties().put(key, value);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized Object remove(Object key) {
-        return getLocalProperties().remove(key);
+    public Object remove(Object key) {
+        recordAccess(key, true);
+        return getWritableLocalProperties().remove(key);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized void putAll(Map<?, ?> t) {
-        getLocalProperties().putAll(t);
+    public void putAll(Map<?, ?> t) {
+        for (var key : t.keySet()) {
+            recordAccess(key, true);
+        }
+        getWritableLocalProperties().putAll(t);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized void clear() {
-        getLocalProperties().clear();
+    public void clear() {
+        getWritableLocalProperties().clear();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized String toString() {
+    public String toString() {
         return getLocalProperties().toString();
     }
 
@@ -276,7 +402,7 @@ public class PropertiesAdapter extends Properties {
      */
     @Override
     public Set<Object> keySet() {
-        return getLocalProperties().keySet();
+        return new KeySet();
     }
 
     /**
@@ -284,7 +410,7 @@ public class PropertiesAdapter extends Properties {
      */
     @Override
     public Collection<Object> values() {
-        return getLocalProperties().values();
+        return new Values();
     }
 
     /**
@@ -292,14 +418,14 @@ public class PropertiesAdapter extends Properties {
      */
     @Override
     public Set<Map.Entry<Object, Object>> entrySet() {
-        return getLocalProperties().entrySet();
+        return new EntrySet();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized boolean equals(Object o) {
+    public boolean equals(Object o) {
         return getLocalProperties().equals(o);
     }
 
@@ -307,7 +433,7 @@ public class PropertiesAdapter extends Properties {
      * {@inheritDoc}
      */
     @Override
-    public synchronized int hashCode() {
+    public int hashCode() {
         return getLocalProperties().hashCode();
     }
 
@@ -316,6 +442,7 @@ public class PropertiesAdapter extends Properties {
      */
     @Override
     public Object getOrDefault(Object key, Object defaultValue) {
+        recordAccess(key, false);
         return getLocalProperties().getOrDefault(key, defaultValue);
     }
 
@@ -323,7 +450,7 @@ public class PropertiesAdapter extends Properties {
      * {@inheritDoc}
      */
     @Override
-    public synchronized void forEach(BiConsumer<? super Object, ? super Object> action) {
+    public void forEach(BiConsumer<? super Object, ? super Object> action) {
         getLocalProperties().forEach(action);
     }
 
@@ -331,75 +458,83 @@ public class PropertiesAdapter extends Properties {
      * {@inheritDoc}
      */
     @Override
-    public synchronized void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
-        getLocalProperties().replaceAll(function);
+    public void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+        getWritableLocalProperties().replaceAll(function);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized Object putIfAbsent(Object key, Object value) {
-        return getLocalProperties().putIfAbsent(key, value);
+    public Object putIfAbsent(Object key, Object value) {
+        recordAccess(key, true);
+        return getWritableLocalProperties().putIfAbsent(key, value);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized boolean remove(Object key, Object value) {
-        return getLocalProperties().remove(key, value);
+    public boolean remove(Object key, Object value) {
+        recordAccess(key, true);
+        return getWritableLocalProperties().remove(key, value);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized boolean replace(Object key, Object oldValue, Object newValue) {
-        return getLocalProperties().replace(key, oldValue, newValue);
+    public boolean replace(Object key, Object oldValue, Object newValue) {
+        recordAccess(key, true);
+        return getWritableLocalProperties().replace(key, oldValue, newValue);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized Object replace(Object key, Object value) {
-        return getLocalProperties().replace(key, value);
+    public Object replace(Object key, Object value) {
+        recordAccess(key, true);
+        return getWritableLocalProperties().replace(key, value);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized Object computeIfAbsent(Object key, Function<? super Object, ?> mappingFunction) {
-        return getLocalProperties().computeIfAbsent(key, mappingFunction);
+    public Object computeIfAbsent(Object key, Function<? super Object, ?> mappingFunction) {
+        recordAccess(key, true);
+        return getWritableLocalProperties().computeIfAbsent(key, mappingFunction);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized Object computeIfPresent(Object key,
-                                                BiFunction<? super Object, ? super Object, ?> remappingFunction) {
-        return getLocalProperties().computeIfPresent(key, remappingFunction);
+    public Object computeIfPresent(Object key,
+                                   BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        recordAccess(key, true);
+        return getWritableLocalProperties().computeIfPresent(key, remappingFunction);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized Object compute(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
-        return getLocalProperties().compute(key, remappingFunction);
+    public Object compute(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        recordAccess(key, true);
+        return getWritableLocalProperties().compute(key, remappingFunction);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public synchronized Object merge(Object key,
-                                     Object value,
-                                     BiFunction<? super Object, ? super Object, ?> remappingFunction) {
-        return getLocalProperties().merge(key, value, remappingFunction);
+    public Object merge(Object key,
+                        Object value,
+                        BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        recordAccess(key, true);
+        return getWritableLocalProperties().merge(key, value, remappingFunction);
     }
 
     /**
@@ -415,11 +550,341 @@ public class PropertiesAdapter extends Properties {
      * {@inheritDoc}
      */
     @Override
-    public synchronized Object clone() {
+    public Object clone() {
         return getLocalProperties().clone();
     }
 
     private Properties getLocalProperties() {
+        if (PropertiesProfiler.isRecording()) recordAccess(false);
         return requireNonNull(THREAD_LOCAL_PROPERTIES.getProperties());
     }
+
+    /**
+     * Used by every method that can modify the properties, including the mutators of the collection views.
+     */
+    private Properties getWritableLocalProperties() {
+        if (PropertiesProfiler.isRecording()) recordAccess(true);
+        return requireNonNull(getWritableProperties());
+    }
+
+    /**
+     * Gets the current thread's properties in a form that can be written to, first opening the innermost scope of an
+     * empty overlay if one has been deferred.
+     */
+    private static Properties getWritableProperties() {
+        if (THREAD_LOCAL_PROPERTIES.get().takeDeferredScope()) addOverlay(emptyMap()).markOpenedScope();
+        return THREAD_LOCAL_PROPERTIES.getWritableProperties();
+    }
+
+    /**
+     * Records an access of a single property, as a JFR event and in the profile of the current test context.
+     */
+    private static void recordAccess(final Object key, final boolean write) {
+        PropertyAccessEvent.record(key, write);
+        if (PropertiesProfiler.isRecording()) {
+            var profile = THREAD_LOCAL_PROPERTIES.get().getProfile();
+            if (profile != null) profile.record(key, write);
+        }
+    }
+
+    /**
+     * Records an access of the properties as a whole in the profile of the current test context.
+     */
+    private static void recordAccess(final boolean write) {
+        var profile = THREAD_LOCAL_PROPERTIES.get().getProfile();
+        if (profile != null) profile.record(write);
+    }
+
+    /**
+     * An iterator over one of the collection views of the adapter. It iterates over the current thread's properties as
+     * they were when it was created, which may be a snapshot shared with other threads, and only gets writable
+     * properties if an entry is removed or changed through it. Until then, iterating over the System Properties costs
+     * no copy-on-write layer, and is not recorded as a write. Nothing is allocated per element beyond what the
+     * underlying view allocates.
+     *
+     * @param <S> the type of the elements of the underlying view.
+     * @param <T> the type of the elements returned.
+     */
+    private abstract class ViewIterator<S, T> implements Iterator<T> {
+
+        final Properties source = getLocalProperties();
+        private final Iterator<S> elements = elementsOf(source);
+        private Object lastKey;
+
+        @Override
+        public boolean hasNext() {
+            return elements.hasNext();
+        }
+
+        @Override
+        public T next() {
+            var element = elements.next();
+            lastKey = keyOf(element);
+            return current(element);
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) throw new IllegalStateException();
+
+            var writable = getWritableLocalProperties();
+            if (writable == source) {
+                elements.remove();
+            } else {
+                writable.remove(lastKey);
+            }
+            lastKey = null;
+        }
+
+        abstract Iterator<S> elementsOf(Properties source);
+
+        abstract Object keyOf(S element);
+
+        abstract T current(S element);
+    }
+
+    /**
+     * An iterator over the adapter's entries, which hands out the same {@link AdapterEntry} for every element. The
+     * values are iterated in the same way, since removing a value from a snapshot takes its key.
+     */
+    private abstract class EntryIterator<T> extends ViewIterator<Map.Entry<Object, Object>, T> {
+
+        final AdapterEntry entry = new AdapterEntry(source);
+
+        @Override
+        Iterator<Map.Entry<Object, Object>> elementsOf(final Properties source) {
+            return source.entrySet().iterator();
+        }
+
+        @Override
+        Object keyOf(final Map.Entry<Object, Object> element) {
+            return element.getKey();
+        }
+    }
+
+    /**
+     * An entry of the entry set view, whose {@link #setValue(Object)} writes to the current thread's writable
+     * properties. Each iterator reuses a single instance, which is reset to each entry of the underlying properties in
+     * turn, so it is only valid until the iterator advances.
+     */
+    private final class AdapterEntry implements Map.Entry<Object, Object> {
+
+        private final Properties source;
+        private Map.Entry<Object, Object> entry;
+        private Object key;
+        private Object value;
+
+        private AdapterEntry(final Properties source) {
+            this.source = source;
+        }
+
+        private AdapterEntry reset(final Map.Entry<Object, Object> entry) {
+            this.entry = entry;
+            this.key = entry.getKey();
+            this.value = entry.getValue();
+            return this;
+        }
+
+        @Override
+        public Object getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public Object setValue(final Object value) {
+            var writable = getWritableLocalProperties();
+            if (writable == source) {
+                entry.setValue(value);
+            } else {
+                writable.put(key, value);
+            }
+            var previous = this.value;
+            this.value = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            var other = (Map.Entry<?, ?>) o;
+            return key.equals(other.getKey()) && value.equals(other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    private final class KeySet extends AbstractSet<Object> {
+
+        @Override
+        public Iterator<Object> iterator() {
+            return new ViewIterator<Object, Object>() {
+                @Override
+                Iterator<Object> elementsOf(final Properties source) {
+                    return source.keySet().iterator();
+                }
+
+                @Override
+                Object keyOf(final Object element) {
+                    return element;
+                }
+
+                @Override
+                Object current(final Object element) {
+                    return element;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return PropertiesAdapter.this.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return PropertiesAdapter.this.isEmpty();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return containsKey(o);
+        }
+
+        @Override
+        public boolean remove(final Object o) {
+            return containsKey(o) && PropertiesAdapter.this.remove(o) != null;
+        }
+
+        @Override
+        public void clear() {
+            PropertiesAdapter.this.clear();
+        }
+    }
+
+    private final class Values extends AbstractCollection<Object> {
+
+        @Override
+        public Iterator<Object> iterator() {
+            return new EntryIterator<>() {
+                @Override
+                Object current(final Map.Entry<Object, Object> element) {
+                    return element.getValue();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return PropertiesAdapter.this.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return PropertiesAdapter.this.isEmpty();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return containsValue(o);
+        }
+
+        @Override
+        public void clear() {
+            PropertiesAdapter.this.clear();
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<Object, Object>> {
+
+        @Override
+        public Iterator<Map.Entry<Object, Object>> iterator() {
+            return new EntryIterator<>() {
+                @Override
+                Map.Entry<Object, Object> current(final Map.Entry<Object, Object> element) {
+                    return entry.reset(element);
+                }
+            };
+        }
+
+        /**
+         * {@inheritDoc}
+         * Unlike the iterator, which reuses a single entry, the array holds a separate entry for each element.
+         */
+        @Override
+        public Object[] toArray() {
+            return detached().toArray();
+        }
+
+        /**
+         * {@inheritDoc}
+         * Unlike the iterator, which reuses a single entry, the array holds a separate entry for each element.
+         */
+        @Override
+        public <T> T[] toArray(final T[] a) {
+            return detached().toArray(a);
+        }
+
+        /**
+         * {@inheritDoc}
+         * Streams may hold on to the elements they are given, so they get a separate entry for each element.
+         */
+        @Override
+        public Spliterator<Map.Entry<Object, Object>> spliterator() {
+            return detached().spliterator();
+        }
+
+        private List<Map.Entry<Object, Object>> detached() {
+            var entries = new ArrayList<Map.Entry<Object, Object>>();
+            new EntryIterator<Map.Entry<Object, Object>>() {
+                @Override
+                Map.Entry<Object, Object> current(final Map.Entry<Object, Object> element) {
+                    return new AdapterEntry(source).reset(element);
+                }
+            }.forEachRemaining(entries::add);
+            return entries;
+        }
+
+        @Override
+        public int size() {
+            return PropertiesAdapter.this.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return PropertiesAdapter.this.isEmpty();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            var entry = (Map.Entry<?, ?>) o;
+            var value = getLocalProperties().get(entry.getKey());
+            return value != null && value.equals(entry.getValue());
+        }
+
+        @Override
+        public boolean remove(final Object o) {
+            if (!contains(o)) return false;
+            var entry = (Map.Entry<?, ?>) o;
+            return PropertiesAdapter.this.remove(entry.getKey(), entry.getValue());
+        }
+
+        @Override
+        public void clear() {
+            PropertiesAdapter.this.clear();
+        }
+    }
 }
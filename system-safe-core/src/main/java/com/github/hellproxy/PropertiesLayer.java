@@ -0,0 +1,1195 @@
+package com.github.hellproxy;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.enumeration;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@code PropertiesLayer} is a copy-on-write layer of {@link Properties} on top of a parent {@code Properties}
+ * instance. A layer only holds the entries that were written to it, along with tombstones for any entries that were
+ * removed from it. All other lookups fall through to the parent.
+ * <p>
+ * The parent of a layer is never written to through the layer. Layers are stacked on top of each other with
+ * {@link #over(Properties)}, which takes a constant-time {@link #snapshot()} of the layer underneath, so that changes
+ * made to either layer afterwards are not visible to the other.
+ * <p>
+ * A frozen layer whose chain ends in {@link FrozenProperties} can never change, so the values it resolves are
+ * remembered. Once a key has been read through a frozen layer, later reads of it take a single hash lookup, however
+ * many layers the value was found beneath. Only the layer that a lookup starts at remembers the value, so a stack of
+ * frozen layers holds at most one remembered copy of each value per layer that is actually read from.
+ *
+ * @author Harry Dent
+ * @see PropertiesNode
+ * @since 1.1
+ */
+public class PropertiesLayer extends Properties {
+
+    /**
+     * Marks an entry that has been removed from a layer, hiding any value held by the layers beneath it.
+     */
+    private static final Object TOMBSTONE = new Object();
+
+    /**
+     * A frozen layer that holds no entries at all.
+     */
+    private static final PropertiesLayer EMPTY = new PropertiesLayer(null, emptyMap(), true);
+
+    /**
+     * The most values that a single frozen layer remembers, which bounds the memory used by layers that are read with
+     * many distinct keys.
+     */
+    private static final int MAX_RESOLVED = 4096;
+
+    /**
+     * How many lookups have to pass through a frozen layer before it starts remembering the values it resolves.
+     */
+    private static final int MIN_MISSES = 8;
+
+    /**
+     * The approximate memory used by a single entry of a layer's map, and by a {@code String} besides its characters.
+     *
+     * @see #localBytes()
+     */
+    private static final int ENTRY_BYTES = 32;
+    private static final int STRING_BYTES = 40;
+
+    private final boolean frozen;
+    private final boolean immutable;
+    private final Map<Object, Object> view = new View();
+    private final Set<String> stringKeySet = new StringKeySet();
+    private final LongAdder misses;
+
+    private volatile Properties parent;
+    private volatile Map<Object, Object> delta;
+    private volatile Map<Object, Object> resolved;
+    private volatile int size = -1;
+    private long writtenBytes;
+
+    private PropertiesLayer(final Properties parent, final Map<Object, Object> delta, final boolean frozen) {
+        this.parent = parent;
+        this.delta = delta;
+        this.frozen = frozen;
+        this.immutable = frozen && isImmutable(parent);
+        this.misses = immutable ? new LongAdder() : null;
+    }
+
+    /**
+     * Creates a new, empty layer on top of the supplied properties. If {@code properties} is itself a layer, the new
+     * layer is put on top of a {@link #snapshot()} of it.
+     *
+     * @param properties the properties that the new layer falls through to.
+     * @return a writable {@code PropertiesLayer} that initially has the same contents as {@code properties}.
+     */
+    public static PropertiesLayer over(final Properties properties) {
+        return new PropertiesLayer(snapshotOf(properties), new ConcurrentHashMap<>(), false);
+    }
+
+    /**
+     * Gets an immutable snapshot of the supplied properties. If {@code properties} is not a layer, the snapshot is an
+     * empty, frozen layer that falls through to it.
+     *
+     * @param properties the properties to take a snapshot of.
+     * @return a frozen {@code PropertiesLayer}.
+     */
+    public static PropertiesLayer snapshotOf(final Properties properties) {
+        if (properties instanceof PropertiesLayer) return ((PropertiesLayer) properties).snapshot();
+        return new PropertiesLayer(requireNonNull(properties), emptyMap(), true);
+    }
+
+    /**
+     * Creates a frozen layer on top of a snapshot of the supplied properties, which shares a precomputed set of changes
+     * rather than copying them. Creating the layer costs the same however many changes it holds.
+     *
+     * @param properties the properties that the new layer falls through to.
+     * @param overlay    changes created with {@link #overlayOf(Map, Collection)}.
+     * @return a frozen {@code PropertiesLayer}.
+     */
+    static PropertiesLayer frozenOver(final Properties properties, final Map<Object, Object> overlay) {
+        var snapshot = snapshotOf(properties);
+        return overlay.isEmpty() ? snapshot : new PropertiesLayer(snapshot, overlay, true);
+    }
+
+    /**
+     * Precomputes an immutable set of changes, which can be shared by any number of frozen layers.
+     *
+     * @param values  the properties to set.
+     * @param removed the keys of the properties to remove.
+     * @return an immutable map of changes, for use with {@link #frozenOver(Properties, Map)}.
+     */
+    static Map<Object, Object> overlayOf(final Map<String, String> values, final Collection<String> removed) {
+        Map<Object, Object> overlay = new HashMap<>(values);
+        removed.forEach(key -> overlay.put(key, TOMBSTONE));
+        return unmodifiableMap(overlay);
+    }
+
+    /**
+     * Freezes the current contents of this layer. The entries written so far are moved into a new, immutable layer,
+     * which this layer then falls through to. No entries are copied.
+     *
+     * @return a frozen {@code PropertiesLayer} that has the same contents as this layer currently has.
+     */
+    public synchronized PropertiesLayer snapshot() {
+        if (frozen) return this;
+        if (delta.isEmpty()) return (PropertiesLayer) parent;
+
+        var snapshot = new PropertiesLayer(parent, delta, true);
+        snapshot.size = size;
+        parent = snapshot;
+        delta = new ConcurrentHashMap<>();
+        return snapshot;
+    }
+
+    /**
+     * Reverts this layer to the contents it had when the supplied snapshot was taken of it. Only the entries written
+     * since then are dropped, so reverting costs the same however many properties there are.
+     *
+     * @param snapshot a snapshot previously returned by this layer's {@link #snapshot()}.
+     */
+    synchronized void revert(final PropertiesLayer snapshot) {
+        checkWritable();
+        parent = snapshot;
+        size = -1;
+        if (!delta.isEmpty()) delta = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Writes a precomputed set of changes to this layer in one step. Snapshots are taken under the same lock, so a
+     * thread that inherits from this layer sees either all of the changes or none of them.
+     *
+     * @param overlay changes created with {@link #overlayOf(Map, Collection)}.
+     */
+    synchronized void apply(final Map<Object, Object> overlay) {
+        checkWritable();
+        var parent = this.parent;
+        overlay.forEach((key, value) -> {
+            var present = lookup(this, key) != null;
+            if (value != TOMBSTONE) {
+                if (!present) resize(1);
+                write(key, value);
+                return;
+            }
+            if (present) resize(-1);
+            if (lookup(parent, key) != null) write(key, TOMBSTONE);
+            else delta.remove(key);
+        });
+    }
+
+    /**
+     * Writes a precomputed set of changes to any writable properties in one step.
+     *
+     * @param properties the properties to write to.
+     * @param overlay    changes created with {@link #overlayOf(Map, Collection)}.
+     * @see #apply(Map)
+     */
+    static void applyTo(final Properties properties, final Map<Object, Object> overlay) {
+        if (properties instanceof PropertiesLayer) {
+            ((PropertiesLayer) properties).apply(overlay);
+            return;
+        }
+        synchronized (properties) {
+            overlay.forEach((key, value) -> {
+                if (value == TOMBSTONE) properties.remove(key);
+                else properties.put(key, value);
+            });
+        }
+    }
+
+    /**
+     * Puts the entries written to this layer since it was put on top of the supplied snapshot on top of another
+     * snapshot instead. The entries of any snapshots taken of this layer since then are copied into a single new
+     * frozen layer, which is swapped in as this layer's parent in one step, so that readers always see either the old
+     * contents or the new.
+     *
+     * @param base the snapshot that this layer was first put on top of.
+     * @param onto the snapshot to put this layer on top of instead.
+     * @return {@code false} if {@code base} is not beneath this layer, in which case nothing is changed.
+     */
+    synchronized boolean rebase(final Properties base, final PropertiesLayer onto) {
+        checkWritable();
+        var written = new HashMap<Object, Object>();
+        for (var current = parent; current != base; current = ((PropertiesLayer) current).parent) {
+            if (!(current instanceof PropertiesLayer)) return false;
+            ((PropertiesLayer) current).delta.forEach(written::putIfAbsent);
+        }
+        parent = written.isEmpty() ? onto : new PropertiesLayer(onto, written, true);
+        size = -1;
+        return true;
+    }
+
+    /**
+     * Counts the entries held by the layers beneath one set of properties that are not also beneath another, which is
+     * how many entries stop being retained when the first is replaced by the second.
+     *
+     * @param replaced    the properties being replaced.
+     * @param replacement the properties replacing them.
+     * @return the number of entries and tombstones only held beneath {@code replaced}.
+     */
+    static int exclusiveSize(final Properties replaced, final Properties replacement) {
+        var retained = Collections.newSetFromMap(new IdentityHashMap<Properties, Boolean>());
+        for (var current = replacement; current != null; current = parentOf(current)) {
+            retained.add(current);
+        }
+        var size = 0;
+        for (var current = replaced; current != null && !retained.contains(current); current = parentOf(current)) {
+            size += current instanceof PropertiesLayer ? ((PropertiesLayer) current).localSize() : current.size();
+        }
+        return size;
+    }
+
+    private static Properties parentOf(final Properties properties) {
+        return properties instanceof PropertiesLayer ? ((PropertiesLayer) properties).parent : null;
+    }
+
+    /**
+     * Counts the entries held by this layer itself, not including those of the layers beneath it.
+     *
+     * @return the number of entries and tombstones written to this layer.
+     */
+    int localSize() {
+        return delta.size();
+    }
+
+    /**
+     * Estimates the memory held by the entries of this layer itself, counting a fixed cost per entry and string, plus
+     * one byte per character of each string key and value.
+     *
+     * @return the estimated size, in bytes, of the entries and tombstones written to this layer.
+     */
+    long localBytes() {
+        var bytes = 0L;
+        for (var entry : delta.entrySet()) {
+            bytes += ENTRY_BYTES + bytesOf(entry.getKey()) + bytesOf(entry.getValue());
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimates the memory written to this layer itself since it was created, in the same way as {@link #localBytes()}.
+     * Unlike {@link #localBytes()}, entries count as soon as they are written, even once they have been moved into a
+     * {@link #snapshot()}, reverted or overwritten.
+     *
+     * @return the estimated number of bytes of entries and tombstones written to this layer so far.
+     */
+    synchronized long writtenBytes() {
+        return writtenBytes;
+    }
+
+    private static long bytesOf(final Object object) {
+        return object instanceof String ? STRING_BYTES + ((String) object).length() : 0;
+    }
+
+    /**
+     * Checks whether this layer is a snapshot, which cannot be modified.
+     *
+     * @return {@code true} if this layer is frozen.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getProperty(String key) {
+        var value = lookup(this, key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The size is kept up to date as the layer is written to, on top of the size of its parent, so it is only counted
+     * again once the layer has been reverted or re-based. Layers over properties that can still change count it on
+     * every call, from their parent's size and their own entries.
+     */
+    @Override
+    public int size() {
+        var size = this.size;
+        return size >= 0 ? size : countSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Enumeration<Object> keys() {
+        return enumeration(keySet());
+    }
+
+    /**
+     * {@inheritDoc}
+     * The names are walked straight from the layers, without collecting them first.
+     */
+    @Override
+    public Enumeration<?> propertyNames() {
+        return keys();
+    }
+
+    /**
+     * {@inheritDoc}
+     * The set is an unmodifiable view that walks the layers on every iteration, rather than a copy collected up front.
+     * Only its {@code size()} walks every entry.
+     */
+    @Override
+    public Set<String> stringPropertyNames() {
+        return stringKeySet;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Enumeration<Object> elements() {
+        return enumeration(values());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(Object value) {
+        return containsValue(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsValue(Object value) {
+        requireNonNull(value);
+        var cursor = new Cursor(this);
+        while (cursor.advance()) {
+            if (value.equals(cursor.value)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return lookup(this, key) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object get(Object key) {
+        return lookup(this, key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Object put(Object key, Object value) {
+        return store(key, requireNonNull(value));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Object remove(Object key) {
+        return erase(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void putAll(Map<?, ?> t) {
+        t.forEach(this::put);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Tombstones are not needed to clear a layer. The layer is simply cut off from its parent.
+     */
+    @Override
+    public synchronized void clear() {
+        checkWritable();
+        parent = EMPTY;
+        delta = new ConcurrentHashMap<>();
+        size = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        return view.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Object> keySet() {
+        return view.keySet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<Object> values() {
+        return view.values();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        return view.entrySet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean equals(Object o) {
+        return o == this || view.equals(o);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized int hashCode() {
+        return view.hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        var value = lookup(this, key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEach(BiConsumer<? super Object, ? super Object> action) {
+        requireNonNull(action);
+        var cursor = new Cursor(this);
+        while (cursor.advance()) {
+            action.accept(cursor.key, cursor.value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+        requireNonNull(function);
+        var cursor = new Cursor(this);
+        while (cursor.advance()) {
+            store(cursor.key, requireNonNull(function.apply(cursor.key, cursor.value)));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Object putIfAbsent(Object key, Object value) {
+        requireNonNull(value);
+        var current = lookup(this, key);
+        if (current == null) store(key, value);
+        return current;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean remove(Object key, Object value) {
+        var current = lookup(this, key);
+        if (current == null || !current.equals(value)) return false;
+        erase(key);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean replace(Object key, Object oldValue, Object newValue) {
+        requireNonNull(newValue);
+        var current = lookup(this, key);
+        if (current == null || !current.equals(oldValue)) return false;
+        store(key, newValue);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Object replace(Object key, Object value) {
+        requireNonNull(value);
+        var current = lookup(this, key);
+        if (current != null) store(key, value);
+        return current;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Object computeIfAbsent(Object key, Function<? super Object, ?> mappingFunction) {
+        requireNonNull(mappingFunction);
+        var current = lookup(this, key);
+        if (current != null) return current;
+
+        var value = mappingFunction.apply(key);
+        if (value != null) store(key, value);
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Object computeIfPresent(Object key,
+                                                BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        requireNonNull(remappingFunction);
+        var current = lookup(this, key);
+        if (current == null) return null;
+
+        return apply(key, remappingFunction.apply(key, current));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Object compute(Object key, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        requireNonNull(remappingFunction);
+        var current = lookup(this, key);
+
+        return apply(key, remappingFunction.apply(key, current));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Object merge(Object key,
+                                     Object value,
+                                     BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        requireNonNull(value);
+        requireNonNull(remappingFunction);
+        var current = lookup(this, key);
+
+        return apply(key, current == null ? value : remappingFunction.apply(current, value));
+    }
+
+    /**
+     * {@inheritDoc}
+     * Layers have no hash table of their own, so there is nothing to rehash.
+     */
+    @Override
+    protected void rehash() {
+        /* no-op */
+    }
+
+    /**
+     * {@inheritDoc}
+     * The clone is a new layer on top of a snapshot of this one, so no entries are copied.
+     */
+    @Override
+    public synchronized Object clone() {
+        return over(this);
+    }
+
+    private Object apply(final Object key, final Object value) {
+        if (value == null) erase(key);
+        else store(key, value);
+        return value;
+    }
+
+    private Object store(final Object key, final Object value) {
+        checkWritable();
+        var previous = lookup(this, key);
+        if (previous == null) resize(1);
+        write(key, value);
+        return previous;
+    }
+
+    private Object erase(final Object key) {
+        checkWritable();
+        var previous = lookup(this, key);
+        if (previous == null) return null;
+
+        resize(-1);
+        if (lookup(parent, key) != null) write(key, TOMBSTONE);
+        else delta.remove(key);
+        return previous;
+    }
+
+    private void write(final Object key, final Object value) {
+        delta.put(key, value);
+        writtenBytes += ENTRY_BYTES + bytesOf(key) + bytesOf(value);
+    }
+
+    /**
+     * Counts the entries visible through this layer from the size of its parent, adjusted by each entry and tombstone
+     * of the layer itself, which only takes a lookup per entry of the layer. The size is remembered unless the
+     * properties beneath the layer can still change.
+     */
+    private synchronized int countSize() {
+        var parent = this.parent;
+        var size = parent != null ? parent.size() : 0;
+        for (var entry : delta.entrySet()) {
+            var inParent = lookup(parent, entry.getKey()) != null;
+            if (entry.getValue() == TOMBSTONE) {
+                if (inParent) size--;
+            } else if (!inParent) {
+                size++;
+            }
+        }
+        if (isImmutable(parent)) this.size = size;
+        return size;
+    }
+
+    /**
+     * Adjusts the remembered size of this layer, if there is one, while the layer is being written to.
+     */
+    private void resize(final int change) {
+        var size = this.size;
+        if (size >= 0) this.size = size + change;
+    }
+
+    private void checkWritable() {
+        if (frozen) throw new UnsupportedOperationException("Properties snapshots cannot be modified");
+    }
+
+    /**
+     * Looks up a key, starting at the supplied properties and falling through any layers until a value or tombstone is
+     * found.
+     *
+     * @param properties the properties to start the lookup at.
+     * @param key        the key to look up.
+     * @return the value of {@code key}, or {@code null} if it is absent or has been removed.
+     */
+    private static Object lookup(final Properties properties, final Object key) {
+        var current = properties;
+        while (current instanceof PropertiesLayer) {
+            var layer = (PropertiesLayer) current;
+            if (layer.immutable) return layer.resolve(key);
+
+            var value = layer.delta.get(key);
+            if (value != null) return value == TOMBSTONE ? null : value;
+            current = layer.parent;
+        }
+        return current != null ? current.get(key) : null;
+    }
+
+    /**
+     * Looks up a key in an immutable layer, using the values remembered by this layer and the layers beneath it. The
+     * value that is found is only remembered by this layer, including absent values, which are remembered as
+     * tombstones. The layers passed through are not read from directly, so remembering it in each of them as well would
+     * only multiply the memory used by deep stacks of snapshots.
+     * <p>
+     * Layers only start remembering values after they have been passed through a few times, so that short-lived
+     * layers, such as those of a {@link PropertiesOverlay} scope, do not pay for a map they will barely use.
+     *
+     * @param key the key to look up.
+     * @return the value of {@code key}, or {@code null} if it is absent or has been removed.
+     */
+    private Object resolve(final Object key) {
+        var remembered = recall(key);
+        if (remembered != null) return remembered == TOMBSTONE ? null : remembered;
+
+        Properties current = this;
+        Object value = null;
+        while (value == null && current instanceof PropertiesLayer) {
+            var layer = (PropertiesLayer) current;
+            value = layer != this ? layer.recall(key) : null;
+            if (value != null) break;
+
+            value = layer.delta.get(key);
+            if (value != null) break;
+            current = layer.parent;
+        }
+        if (value == null && current != null) value = current.get(key);
+        if (value == null) value = TOMBSTONE;
+
+        remember(key, value);
+        return value == TOMBSTONE ? null : value;
+    }
+
+    private Object recall(final Object key) {
+        var map = resolved;
+        return map != null ? map.get(key) : null;
+    }
+
+    private void remember(final Object key, final Object value) {
+        var map = resolved;
+        if (map == null) {
+            misses.increment();
+            if (misses.sum() < MIN_MISSES) return;
+            synchronized (this) {
+                map = resolved;
+                if (map == null) resolved = map = new ConcurrentHashMap<>();
+            }
+        }
+        if (map.size() < MAX_RESOLVED) map.put(key, value);
+    }
+
+    /**
+     * Checks whether the supplied parent can never change, which is the case for {@link FrozenProperties} and for
+     * frozen layers whose own chains end in one.
+     */
+    private static boolean isImmutable(final Properties parent) {
+        if (parent == null || parent instanceof FrozenProperties) return true;
+        return parent instanceof PropertiesLayer && ((PropertiesLayer) parent).immutable;
+    }
+
+    /**
+     * Walks every entry visible through a layer, one layer at a time from the top down, without merging the layers. An
+     * entry is skipped if it is a tombstone, or if a layer above the one holding it has an entry for the same key, so
+     * nothing is allocated beyond the cursor and the iterators of the maps it walks.
+     * <p>
+     * The cursor reads the delta of the top layer before its parent. A concurrent {@link #snapshot()} can then only
+     * cause the same entries to be walked twice, in which case the second walk is skipped as shadowed.
+     */
+    private static final class Cursor {
+
+        private final Map<Object, Object> topDelta;
+        private final Properties topParent;
+
+        private Properties owner;
+        private Properties next;
+        private Map<?, ?> entries;
+        private Iterator<?> keys;
+
+        private Object key;
+        private Object value;
+
+        private Cursor(final PropertiesLayer layer) {
+            this.topDelta = layer.delta;
+            this.topParent = layer.parent;
+            this.entries = topDelta;
+            this.keys = topDelta.keySet().iterator();
+            this.next = topParent;
+        }
+
+        /**
+         * Moves on to the next visible entry.
+         *
+         * @return {@code true} if there is another entry, which is then held in {@link #key} and {@link #value}.
+         */
+        private boolean advance() {
+            while (true) {
+                while (keys.hasNext()) {
+                    var candidate = keys.next();
+                    var candidateValue = entries.get(candidate);
+                    if (candidateValue == null || candidateValue == TOMBSTONE || isShadowed(candidate)) continue;
+
+                    key = candidate;
+                    value = candidateValue;
+                    return true;
+                }
+                if (next == null) return false;
+
+                owner = next;
+                if (next instanceof PropertiesLayer) {
+                    var layer = (PropertiesLayer) next;
+                    entries = layer.delta;
+                    next = layer.parent;
+                } else {
+                    entries = next;
+                    next = null;
+                }
+                keys = entries.keySet().iterator();
+            }
+        }
+
+        private boolean isShadowed(final Object candidate) {
+            if (owner == null) return false;
+            if (topDelta.containsKey(candidate)) return true;
+
+            for (var layer = topParent; layer != owner; layer = ((PropertiesLayer) layer).parent) {
+                if (((PropertiesLayer) layer).delta.containsKey(candidate)) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * An iterator over one of the collection views of a layer, driven by a {@link Cursor}. Entries removed through the
+     * iterator are removed from the layer.
+     */
+    private abstract class ViewIterator<T> implements Iterator<T> {
+
+        private final Cursor cursor = new Cursor(PropertiesLayer.this);
+        private boolean advanced;
+        private boolean hasNext;
+        private Object lastKey;
+
+        @Override
+        public boolean hasNext() {
+            if (!advanced) {
+                do {
+                    hasNext = cursor.advance();
+                } while (hasNext && !accepts(cursor.key, cursor.value));
+                advanced = true;
+            }
+            return hasNext;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            advanced = false;
+            lastKey = cursor.key;
+            return current(cursor.key, cursor.value);
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) throw new IllegalStateException();
+            PropertiesLayer.this.remove(lastKey);
+            lastKey = null;
+        }
+
+        boolean accepts(final Object key, final Object value) {
+            return true;
+        }
+
+        abstract T current(Object key, Object value);
+    }
+
+    /**
+     * The {@code Map} view backing the collection views of a layer. Iteration streams across the layers with a
+     * {@link Cursor}, and modifications write through to the layer itself.
+     */
+    private class View extends AbstractMap<Object, Object> {
+
+        private final Set<Map.Entry<Object, Object>> entrySet = new AbstractSet<>() {
+
+            /**
+             * Returns an iterator that hands out the same entry for every element, updated as it advances, so that
+             * iterating over the entries allocates nothing per entry. The entry is only valid until the iterator
+             * advances. Arrays and streams of the entries get a separate entry for each element instead.
+             */
+            @Override
+            public Iterator<Map.Entry<Object, Object>> iterator() {
+                return new ViewIterator<>() {
+                    private final LayerEntry entry = new LayerEntry();
+
+                    @Override
+                    Map.Entry<Object, Object> current(Object key, Object value) {
+                        return entry.reset(key, value);
+                    }
+                };
+            }
+
+            @Override
+            public Object[] toArray() {
+                return detached().toArray();
+            }
+
+            @Override
+            public <T> T[] toArray(T[] a) {
+                return detached().toArray(a);
+            }
+
+            @Override
+            public Spliterator<Map.Entry<Object, Object>> spliterator() {
+                return Spliterators.spliteratorUnknownSize(detachedIterator(), Spliterator.DISTINCT);
+            }
+
+            private List<Map.Entry<Object, Object>> detached() {
+                var entries = new ArrayList<Map.Entry<Object, Object>>();
+                detachedIterator().forEachRemaining(entries::add);
+                return entries;
+            }
+
+            private Iterator<Map.Entry<Object, Object>> detachedIterator() {
+                return new ViewIterator<>() {
+                    @Override
+                    Map.Entry<Object, Object> current(Object key, Object value) {
+                        return new LayerEntry().reset(key, value);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return PropertiesLayer.this.size();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return PropertiesLayer.this.isEmpty();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Map.Entry)) return false;
+                var entry = (Map.Entry<?, ?>) o;
+                var value = lookup(PropertiesLayer.this, entry.getKey());
+                return value != null && value.equals(entry.getValue());
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if (!(o instanceof Map.Entry)) return false;
+                var entry = (Map.Entry<?, ?>) o;
+                return PropertiesLayer.this.remove(entry.getKey(), entry.getValue());
+            }
+
+            @Override
+            public void clear() {
+                PropertiesLayer.this.clear();
+            }
+        };
+
+        private final Set<Object> keySet = new AbstractSet<>() {
+
+            @Override
+            public Iterator<Object> iterator() {
+                return new ViewIterator<>() {
+                    @Override
+                    Object current(Object key, Object value) {
+                        return key;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return PropertiesLayer.this.size();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return PropertiesLayer.this.isEmpty();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return lookup(PropertiesLayer.this, o) != null;
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                return PropertiesLayer.this.remove(o) != null;
+            }
+
+            @Override
+            public void clear() {
+                PropertiesLayer.this.clear();
+            }
+        };
+
+        private final Collection<Object> values = new AbstractCollection<>() {
+
+            @Override
+            public Iterator<Object> iterator() {
+                return new ViewIterator<>() {
+                    @Override
+                    Object current(Object key, Object value) {
+                        return value;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return PropertiesLayer.this.size();
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return PropertiesLayer.this.isEmpty();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return PropertiesLayer.this.containsValue(o);
+            }
+
+            @Override
+            public void clear() {
+                PropertiesLayer.this.clear();
+            }
+        };
+
+        @Override
+        public Set<Map.Entry<Object, Object>> entrySet() {
+            return entrySet;
+        }
+
+        @Override
+        public Set<Object> keySet() {
+            return keySet;
+        }
+
+        @Override
+        public Collection<Object> values() {
+            return values;
+        }
+
+        @Override
+        public int size() {
+            return PropertiesLayer.this.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return PropertiesLayer.this.isEmpty();
+        }
+
+        @Override
+        public Object get(Object key) {
+            return lookup(PropertiesLayer.this, key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return lookup(PropertiesLayer.this, key) != null;
+        }
+
+        @Override
+        public Object put(Object key, Object value) {
+            return PropertiesLayer.this.put(key, value);
+        }
+
+        @Override
+        public Object remove(Object key) {
+            return PropertiesLayer.this.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            PropertiesLayer.this.clear();
+        }
+    }
+
+    /**
+     * The unmodifiable view behind {@link #stringPropertyNames()}, holding the keys of the entries whose keys and
+     * values are both strings.
+     */
+    private class StringKeySet extends AbstractSet<String> {
+
+        @Override
+        public Iterator<String> iterator() {
+            return new ViewIterator<>() {
+                @Override
+                boolean accepts(final Object key, final Object value) {
+                    return key instanceof String && value instanceof String;
+                }
+
+                @Override
+                String current(final Object key, final Object value) {
+                    return (String) key;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            var cursor = new Cursor(PropertiesLayer.this);
+            var size = 0;
+            while (cursor.advance()) {
+                if (cursor.key instanceof String && cursor.value instanceof String) size++;
+            }
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return !iterator().hasNext();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return o instanceof String && lookup(PropertiesLayer.this, o) instanceof String;
+        }
+    }
+
+    /**
+     * An entry of a layer, whose {@link #setValue(Object)} writes through to the layer by its key. The entry iterator
+     * reuses a single instance, which is reset to each entry in turn.
+     */
+    private class LayerEntry implements Map.Entry<Object, Object> {
+
+        private Object key;
+        private Object value;
+
+        private LayerEntry reset(final Object key, final Object value) {
+            this.key = key;
+            this.value = value;
+            return this;
+        }
+
+        @Override
+        public Object getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public Object setValue(final Object value) {
+            PropertiesLayer.this.put(key, value);
+            var previous = this.value;
+            this.value = value;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            var entry = (Map.Entry<?, ?>) o;
+            return key.equals(entry.getKey()) && value.equals(entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.hellproxy;
+
+import jdk.jfr.*;
+
+import java.util.Properties;
+
+/**
+ * A JFR event recording the entries that a test, or a thread it spawned, wrote to its own {@link PropertiesLayer}.
+ * Committed when the layer's node is removed from its properties tree, at which point the entries become garbage.
+ *
+ * @author Harry Dent
+ * @see PropertiesNode#remove()
+ * @since 1.1
+ */
+@Name("com.github.hellproxy.PropertiesLayer")
+@Label("SystemSafe Properties Layer")
+@Category("SystemSafe")
+@Description("The entries written to a properties layer, committed when its node is removed")
+@Enabled(false)
+@StackTrace(false)
+final class PropertiesLayerEvent extends Event {
+
+    @Label("Keys")
+    @Description("The number of entries and tombstones held by the layer itself")
+    int keys;
+
+    @Label("Size")
+    @Description("An estimate of the memory held by the layer's entries")
+    @DataAmount
+    long bytes;
+
+    @Label("Released")
+    @Description("Whether the node was released because a node it inherited from was removed")
+    boolean released;
+
+    /**
+     * Records the entries of the properties that a removed node held, if they were a writable layer.
+     *
+     * @param properties the properties that the node held.
+     * @param released   whether the node was released along with a node it inherited from.
+     */
+    static void record(final Properties properties, final boolean released) {
+        if (!(properties instanceof PropertiesLayer)) return;
+
+        var event = new PropertiesLayerEvent();
+        if (event.isEnabled()) {
+            var layer = (PropertiesLayer) properties;
+            event.keys = layer.localSize();
+            event.bytes = layer.localBytes();
+            event.released = released;
+            event.commit();
+        }
+    }
+}
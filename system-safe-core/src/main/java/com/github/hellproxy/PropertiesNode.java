@@ -1,79 +1,430 @@
 package com.github.hellproxy;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
-import static com.github.hellproxy.SystemSafeExtension.getInitialSystemProperties;
+import static java.util.Objects.requireNonNull;
 
 /**
  * A node of a thread-local properties tree. Has a link to its parent, and holds a nullable reference to a
  * {@link Properties} instance.
+ * <p>
+ * Once a node has been removed, it stays removed. This means that the link of a removed node can safely be pointed
+ * further up the tree, past any other removed nodes, which keeps the tree shallow however many nodes are added to and
+ * removed from it.
+ * <p>
+ * A node keeps weak links to the nodes of the threads and tasks that inherited from it. When the node is
+ * {@link #release() released} at the end of a test context, those nodes are released too, so that a pooled thread that
+ * outlives the test that spawned it does not hold on to the finished test's properties for as long as the thread lives.
+ * A released node is put on top of a private snapshot of the properties further up the tree instead, just as if the
+ * thread had been spawned from there, but keeps the properties that its thread wrote itself. A node that is merely
+ * {@link #remove() removed}, such as the node of a closed {@link PropertiesOverlay} scope, passes its links on to the
+ * next node up the tree instead, so the threads and tasks still running with its properties keep them until the test
+ * context ends.
  *
  * @author Harry Dent
  * @see ThreadLocalProperties
  * @since 1.0
  */
-public class PropertiesNode {
+public class PropertiesNode extends TreeNode<PropertiesNode> {
+
+    private static final int MIN_DERIVED_THRESHOLD = 16;
+
+    private static final LongAdder RELEASED_NODES = new LongAdder();
+    private static final LongAdder RELEASED_PROPERTIES = new LongAdder();
 
-    private final PropertiesNode parent;
     private final AtomicReference<Properties> properties;
+    private final Properties root;
+    private volatile boolean readOnly;
+    private volatile Properties inherited;
+    private AccessProfile profile;
+    private int deferredScopes;
+    private boolean openedScope;
+    private List<WeakReference<PropertiesNode>> derived;
+    private int derivedThreshold = MIN_DERIVED_THRESHOLD;
 
     /**
-     * Used when initializing a new thread-local properties tree.
+     * Used when initializing a new thread-local properties tree, which falls back to the System Properties shared by
+     * threads outside of any test context.
      */
     public PropertiesNode() {
         this(null, null);
     }
 
     /**
-     * Used when a child thread inherits a place in its parents properties tree.
+     * Used when a child thread inherits a place in its parents properties tree. The child thread shares an immutable
+     * snapshot of its parent's properties, until it first writes to them.
      *
      * @param parent the {@code PropertiesNode} instance held by the parent thread to whichever thread constructs this
      *               instance. Also the current head of the properties tree.
+     * @see #getWritableProperties()
      */
     public PropertiesNode(final PropertiesNode parent) {
-        this(parent, (Properties) parent.getProperties().clone());
+        this(parent, null);
+        inherit(parent, null);
     }
 
     /**
-     * Used when a specific set of properties is added to the properties tree.
+     * Used when a specific set of properties is added to the properties tree. A new tree falls back to the System
+     * Properties shared by threads outside of any test context.
      *
      * @param parent     the current head of the properties tree.
      * @param properties the properties that will be held by this tree node.
      */
     public PropertiesNode(final PropertiesNode parent, final Properties properties) {
-        this.parent = parent;
+        this(parent, properties, parent == null ? SystemSafeExtension.getSharedSystemProperties() : null);
+    }
+
+    /**
+     * Used when a specific set of properties is added to a properties tree that falls back to properties of its own.
+     *
+     * @param parent     the current head of the properties tree, or {@code null} to start a new tree.
+     * @param properties the properties that will be held by this tree node.
+     * @param root       the properties that a new tree falls back to once every node up to its root has been
+     *                   removed. Ignored if {@code parent} is not {@code null}, since the tree already has them.
+     * @see ThreadLocalProperties#ThreadLocalProperties(Properties)
+     */
+    PropertiesNode(final PropertiesNode parent, final Properties properties, final Properties root) {
+        this(parent, properties, parent != null ? parent.root : root, false);
+    }
+
+    private PropertiesNode(final PropertiesNode parent,
+                           final Properties properties,
+                           final Properties root,
+                           final boolean readOnly) {
+        super(parent);
         this.properties = new AtomicReference<>(properties);
+        this.root = requireNonNull(root);
+        this.readOnly = readOnly;
+        this.profile = parent != null ? parent.profile : null;
+    }
+
+    /**
+     * Creates a node that reads the current properties of another node directly, rather than a snapshot of them, and
+     * which is not expected to be written to. Threads spawned from the node still get a snapshot of their own, as
+     * usual. If the node is written to after all, a warning is logged, and it is given a copy-on-write layer of its own
+     * first, just like any other node.
+     *
+     * @param parent the node to read the properties of.
+     * @return a new, read-only {@code PropertiesNode}.
+     * @see PropertiesProfiler
+     */
+    static PropertiesNode readOnlyOver(final PropertiesNode parent) {
+        return new PropertiesNode(parent, parent.getProperties(), parent.root, true);
     }
 
     /**
      * Gets the first non-null properties held by this node, or by one of its ancestors, traversing up the tree. If the
-     * root of the tree is reached, the original System Properties are returned.
+     * root of the tree is reached, the properties that the tree falls back to are returned, which are the System
+     * Properties shared by threads outside of any test context unless the tree was started with others.
      *
      * @return a non-null {@code Properties} instance.
      */
     public Properties getProperties() {
         var head = getHead();
-        return head != null ? head.properties.get() : getInitialSystemProperties();
+        return head != null ? head.properties.get() : root;
+    }
+
+    /**
+     * Gets the same properties as {@link #getProperties()}, but in a form that can be written to. If the head of the
+     * tree only holds a snapshot shared with another thread, a new {@link PropertiesLayer} is put on top of it first.
+     *
+     * @return a non-null, writable {@code Properties} instance.
+     */
+    public Properties getWritableProperties() {
+        var head = getHead();
+        if (head == null) return root;
+        if (head.readOnly) head.stopReadingDirectly();
+
+        var properties = head.properties.get();
+        while (isFrozen(properties)) {
+            var layer = PropertiesLayer.over(properties);
+            if (head.properties.compareAndSet(properties, layer)) return layer;
+            properties = head.properties.get();
+        }
+        return properties != null ? properties : getWritableProperties();
+    }
+
+    /**
+     * Puts a copy-on-write layer on top of the properties that this read-only node reads directly, so that writing to
+     * it never changes the properties of the node it was created over.
+     *
+     * @see #readOnlyOver(PropertiesNode)
+     */
+    private synchronized void stopReadingDirectly() {
+        if (!readOnly) return;
+
+        PropertiesProfiler.warnOutOfDate();
+        var current = properties.get();
+        if (current != null) properties.compareAndSet(current, PropertiesLayer.over(current));
+        readOnly = false;
     }
 
     /**
      * Gets the first node to have a non-null properties reference, starting with this node and traversing up through
-     * its ancestors.
+     * its ancestors. Every removed node that is passed on the way is linked directly to the node that is found, so that
+     * later calls do not have to traverse them again.
      *
      * @return a {@code PropertiesNode} instance whose {@link #properties} reference is non-null, or  {@code null} if
      * one could not be found.
+     * @see TreeNode#findHead()
      */
     public PropertiesNode getHead() {
-        if (properties.get() != null) return this;
-        if (parent != null) return parent.getHead();
-        return null;
+        return findHead();
+    }
+
+    @Override
+    boolean isRemoved() {
+        return properties.get() == null;
+    }
+
+    @Override
+    void walkedPast(final int removed) {
+        TreeWalkEvent.record(removed);
+    }
+
+    /**
+     * Counts the nodes from this node up to the root of its tree that have not been removed, which is how deeply the
+     * properties seen through this node are nested.
+     *
+     * @return the number of nodes still in the tree on the path to its root, including this one.
+     */
+    int getDepth() {
+        var depth = 0;
+        for (var node = this; node != null; node = node.getParent()) {
+            if (node.properties.get() != null) depth++;
+        }
+        return depth;
     }
 
     /**
-     * Sets the current {@link #properties} reference to {@code null}, effectively removing this node from the tree.
+     * Sets the current {@link #properties} reference to {@code null}, effectively removing this node from the tree. A
+     * removed node cannot be added back to the tree. Any nodes derived from this one keep the properties they
+     * inherited, and are linked to the next node up the tree instead, so that they are released along with it.
      */
     public void remove() {
-        properties.set(null);
+        var derived = new ArrayDeque<PropertiesNode>();
+        PropertiesLayerEvent.record(detach(derived), false);
+
+        var ancestor = getParent();
+        for (var node : derived) {
+            link(ancestor, node);
+        }
+    }
+
+    /**
+     * Removes this node at the end of the test context it belongs to. Any nodes derived from this one, and the nodes
+     * derived from those, are released along with it. Each is put on top of a private snapshot of the properties above
+     * this node instead, keeping only the properties that were written to the node itself.
+     */
+    public void release() {
+        var released = new ArrayDeque<PropertiesNode>();
+        PropertiesLayerEvent.record(detach(released), false);
+
+        var ancestor = getParent();
+        while (!released.isEmpty()) {
+            var node = released.pop();
+            var replaced = node.release(ancestor, released);
+            if (replaced == null) continue;
+
+            PropertiesLayerEvent.record(node.properties.get(), true);
+            RELEASED_NODES.increment();
+            RELEASED_PROPERTIES.add(PropertiesLayer.exclusiveSize(replaced, node.inherited));
+        }
+    }
+
+    /**
+     * Gets the profile that accesses of the properties through this node are recorded to.
+     *
+     * @return the profile of the test context that this node belongs to, or {@code null} if it is not being profiled.
+     */
+    AccessProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Defers opening an empty scope on top of this node until the properties are first written to, so that scopes
+     * that are never written to allocate nothing. Only ever called by the thread that this node is installed on.
+     *
+     * @see PropertiesOverlay#open()
+     */
+    void deferScope() {
+        deferredScopes++;
+    }
+
+    /**
+     * Takes the innermost of the empty scopes deferred on this node, either to open it or because it is being closed.
+     *
+     * @return {@code true} if a deferred scope was taken, or {@code false} if there were none.
+     */
+    boolean takeDeferredScope() {
+        if (deferredScopes == 0) return false;
+        deferredScopes--;
+        return true;
+    }
+
+    /**
+     * Marks this node as an empty scope that was opened when it was first written to.
+     */
+    void markOpenedScope() {
+        openedScope = true;
+    }
+
+    /**
+     * @return {@code true} if this node is an empty scope that was opened when it was first written to.
+     */
+    boolean isOpenedScope() {
+        return openedScope;
+    }
+
+    /**
+     * Sets the profile that accesses of the properties through this node, and through nodes created from it from then
+     * on, are recorded to.
+     *
+     * @param profile the profile of the test context that this node belongs to.
+     */
+    void setProfile(final AccessProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Gets how many nodes have been released because a node they were derived from was removed.
+     *
+     * @return the total number of released nodes.
+     */
+    static long getReleasedNodes() {
+        return RELEASED_NODES.sum();
+    }
+
+    /**
+     * Gets how many properties were held by the snapshots that released nodes inherited, which are no longer retained
+     * by the threads that the nodes belonged to.
+     *
+     * @return the total number of properties released.
+     */
+    static long getReleasedProperties() {
+        return RELEASED_PROPERTIES.sum();
+    }
+
+    /**
+     * Records a weak link to a node that inherits from this one. Links to nodes that have since been garbage
+     * collected are pruned whenever the number of links doubles.
+     *
+     * @param node the node that inherits from this one.
+     * @return {@code false} if this node has already been removed, in which case no link is recorded.
+     */
+    private synchronized boolean addDerived(final PropertiesNode node) {
+        if (properties.get() == null) return false;
+
+        if (derived == null) derived = new ArrayList<>();
+        if (derived.size() >= derivedThreshold) {
+            derived.removeIf(reference -> reference.get() == null);
+            derivedThreshold = Math.max(MIN_DERIVED_THRESHOLD, derived.size() * 2);
+        }
+        derived.add(new WeakReference<>(node));
+        return true;
+    }
+
+    /**
+     * Removes this node, and queues the nodes derived from it to be released.
+     *
+     * @param released the queue of nodes to release.
+     * @return the properties that this node held, or {@code null} if it had already been removed.
+     */
+    private synchronized Properties detach(final Deque<PropertiesNode> released) {
+        var removed = properties.getAndSet(null);
+        queueDerived(released);
+        return removed;
+    }
+
+    /**
+     * Re-bases the properties of this node, which was derived from a node that has been released, on a snapshot of the
+     * properties further up the tree, and queues the nodes derived from it to be released in turn. The node is never
+     * left without properties of its own, so its thread cannot fall through to, and write to, the properties of
+     * another node in the meantime.
+     *
+     * @param ancestor the parent of the released node, or {@code null} if it was the root of its tree.
+     * @param released the queue of nodes to release.
+     * @return the snapshot that this node inherited before, or {@code null} if it had already been removed.
+     */
+    private synchronized Properties release(final PropertiesNode ancestor, final Deque<PropertiesNode> released) {
+        var current = properties.get();
+        if (current == null) return null;
+
+        queueDerived(released);
+        var replaced = inherited;
+        inherit(ancestor, current);
+        return replaced;
+    }
+
+    /**
+     * Puts this node on top of a snapshot of the properties held by the head of another node's tree, and links it to
+     * that head, so that this node is released in turn when the head is released. If the head is removed before the
+     * link is made, the next head up the tree is tried instead.
+     *
+     * @param ancestor the node to inherit from, or {@code null} to inherit the properties that the tree falls back to.
+     * @param current  the properties that this node holds now, which are left alone if they have been replaced.
+     */
+    private void inherit(final PropertiesNode ancestor, final Properties current) {
+        var expected = current;
+        while (true) {
+            var head = ancestor != null ? ancestor.getHead() : null;
+            var inheritable = head != null ? head.properties.get() : root;
+            if (inheritable == null) continue;
+
+            var snapshot = PropertiesLayer.snapshotOf(inheritable);
+            if (!rebase(expected, snapshot)) return;
+            if (head == null || head.addDerived(this)) return;
+            expected = properties.get();
+        }
+    }
+
+    /**
+     * Puts the properties of this node on top of a new snapshot. A writable layer keeps the entries written to it since
+     * it inherited its previous snapshot, and is re-based in place, so that writes made by its thread in the meantime
+     * are never lost. Otherwise, the properties are replaced by the snapshot itself.
+     *
+     * @param current  the properties that this node holds now.
+     * @param snapshot the snapshot to inherit.
+     * @return {@code false} if the properties of this node have been replaced in the meantime.
+     */
+    private boolean rebase(final Properties current, final PropertiesLayer snapshot) {
+        var base = inherited;
+        var rebased = current instanceof PropertiesLayer && !isFrozen(current) && base != null
+                && ((PropertiesLayer) current).rebase(base, snapshot);
+        if (!rebased && !properties.compareAndSet(current, snapshot)) return false;
+
+        inherited = snapshot;
+        return true;
+    }
+
+    /**
+     * Links a node to the head of another node's tree, or to the next head up the tree if that head is removed before
+     * the link is made.
+     */
+    private static void link(final PropertiesNode ancestor, final PropertiesNode node) {
+        for (var head = ancestor != null ? ancestor.getHead() : null; head != null; head = head.getHead()) {
+            if (head.addDerived(node)) return;
+        }
+    }
+
+    private void queueDerived(final Deque<PropertiesNode> released) {
+        if (derived == null) return;
+
+        for (var reference : derived) {
+            var node = reference.get();
+            if (node != null) released.push(node);
+        }
+        derived = null;
+    }
+
+    private static boolean isFrozen(final Properties properties) {
+        return properties instanceof PropertiesLayer && ((PropertiesLayer) properties).isFrozen();
     }
 }
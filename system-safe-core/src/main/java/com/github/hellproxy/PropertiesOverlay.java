@@ -0,0 +1,134 @@
+package com.github.hellproxy;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static java.lang.String.format;
+import static java.util.Collections.emptyMap;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@code PropertiesOverlay} is an immutable set of System Properties to set, and to clear, that can be applied to the
+ * current thread for the duration of a task, or of a try-with-resources block, without the JUnit lifecycle:
+ * <pre>{@code
+ * var overlay = SystemSafe.with(Map.of("fruit", "apple"));
+ *
+ * overlay.run(() -> System.getProperty("fruit")); // "apple"
+ *
+ * try (var scope = overlay.open()) {
+ *     System.setProperty("fruit", "banana");      // not visible once the scope is closed
+ * }
+ * }</pre>
+ * Each scope puts a snapshot of the current thread's properties, with the overlay applied, on top of the thread's
+ * properties tree, and removes it again when it is closed. Scopes can be nested, and must be closed on the thread that
+ * opened them. An overlay can be reused as often as needed, since it is only computed once.
+ * <p>
+ * An overlay can also be {@link #apply() applied} to the current thread's properties for good, which sets and clears
+ * all of its properties in one step.
+ * <p>
+ * The scopes of an empty overlay still isolate the properties set within them, but allocate nothing until the
+ * properties are first written to within them, which makes it cheap to wrap millions of short calls in one.
+ *
+ * @author Harry Dent
+ * @see SystemSafe#with(Map)
+ * @since 1.1
+ */
+public final class PropertiesOverlay {
+
+    private static final PropertiesOverlay EMPTY = new PropertiesOverlay(emptyMap());
+    private static final Scope EMPTY_SCOPE = PropertiesAdapter::closeEmptyScope;
+
+    private final Map<Object, Object> overlay;
+
+    private PropertiesOverlay(final Map<Object, Object> overlay) {
+        this.overlay = overlay;
+    }
+
+    /**
+     * Creates an overlay of the supplied properties.
+     *
+     * @param properties the System Properties to set within the overlay's scopes.
+     * @param cleared    the keys of the System Properties to clear within the overlay's scopes.
+     * @return a reusable {@code PropertiesOverlay}.
+     * @throws IllegalArgumentException if a key is both set and cleared.
+     */
+    static PropertiesOverlay of(final Map<String, String> properties, final Collection<String> cleared) {
+        if (properties.isEmpty() && cleared.isEmpty()) return EMPTY;
+
+        var removed = new HashSet<>(cleared);
+        for (var key : removed) {
+            if (properties.containsKey(requireNonNull(key))) {
+                throw new IllegalArgumentException(format("System Property '%s' is both set and cleared", key));
+            }
+        }
+        return new PropertiesOverlay(PropertiesLayer.overlayOf(Map.copyOf(properties), removed));
+    }
+
+    /**
+     * Applies this overlay to the current thread until the returned scope is closed.
+     *
+     * @return a {@link Scope} that must be closed on the current thread.
+     */
+    public Scope open() {
+        if (overlay.isEmpty()) {
+            PropertiesAdapter.openEmptyScope();
+            return EMPTY_SCOPE;
+        }
+
+        var node = PropertiesAdapter.addOverlay(overlay);
+        return () -> PropertiesAdapter.removeProperties(node);
+    }
+
+    /**
+     * Applies this overlay to the current thread's properties for good, as if each of its properties had been set or
+     * cleared, but in a single step. A thread spawned by the current thread, or a task wrapped by it, sees either all
+     * of the overlay's changes or none of them.
+     */
+    public void apply() {
+        if (!overlay.isEmpty()) PropertiesAdapter.applyOverlay(overlay);
+    }
+
+    /**
+     * Runs a task on the current thread, with this overlay applied.
+     *
+     * @param task the task to run.
+     */
+    public void run(final Runnable task) {
+        requireNonNull(task);
+        try (var ignored = open()) {
+            task.run();
+        }
+    }
+
+    /**
+     * Calls a task on the current thread, with this overlay applied.
+     *
+     * @param task the task to call.
+     * @param <V>  the type of the task's result.
+     * @return the result of {@code task}.
+     * @throws Exception if {@code task} throws an exception.
+     */
+    public <V> V call(final Callable<V> task) throws Exception {
+        requireNonNull(task);
+        try (var ignored = open()) {
+            return task.call();
+        }
+    }
+
+    /**
+     * The scope of an applied overlay. Closing it removes the overlay, along with any changes made to the properties
+     * within it.
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+
+        /**
+         * {@inheritDoc}
+         * Never throws a checked exception.
+         */
+        @Override
+        void close();
+    }
+}
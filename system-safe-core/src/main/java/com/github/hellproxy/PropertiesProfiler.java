@@ -0,0 +1,289 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ExtensionContext.Namespace;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.String.format;
+import static java.lang.System.Logger.Level.WARNING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.joining;
+import static org.junit.jupiter.api.extension.ExtensionContext.Namespace.create;
+
+/**
+ * Profiles which tests access System Properties, so that a later run can skip isolating the tests that never write
+ * them. The profiler is configured with JUnit configuration parameters:
+ * <ul>
+ *     <li>{@value #MODE_PARAMETER}: {@code record} to profile the tests that run, {@code replay} to use a recorded
+ *     profile, or {@code off}, the default.</li>
+ *     <li>{@value #FILE_PARAMETER}: the profile file, {@value #DEFAULT_FILE} by default.</li>
+ * </ul>
+ * When recording, a record is appended to the profile file as each test context finishes, and a report of the most
+ * accessed keys, and of the tests that write keys other tests also use, is printed once every test has run. Records
+ * are only ever appended, so a test that is recorded more than once is treated as having done everything that any of
+ * its records say it did. Delete the file to start a fresh profile.
+ * <p>
+ * When replaying, a test that is known to never have written System Properties, and which declares none of its own, is
+ * not given a layer of its own. It reads the properties of its test class directly. If the profile turns out to be out
+ * of date, and the test writes to them after all, a warning is logged, and the test is given a copy-on-write layer of
+ * its own before the write, so it still never changes its test class's properties.
+ *
+ * @author Harry Dent
+ * @see AccessProfile
+ * @since 1.1
+ */
+final class PropertiesProfiler implements ExtensionContext.Store.CloseableResource {
+
+    static final String MODE_PARAMETER = "systemsafe.profile.mode";
+    static final String FILE_PARAMETER = "systemsafe.profile.file";
+    static final String DEFAULT_FILE = "build/systemsafe/profile.bin";
+
+    private static final Namespace NAMESPACE = create(PropertiesProfiler.class);
+
+    private static final int HOT_KEYS = 10;
+
+    /**
+     * The number of profilers currently recording. Checked on every property access, so that nothing else is done
+     * unless a profile is being recorded.
+     */
+    private static final AtomicInteger RECORDING = new AtomicInteger();
+
+    private enum Mode {
+        OFF, RECORD, REPLAY
+    }
+
+    private final Mode mode;
+    private final Path file;
+    private final Map<String, AccessProfile> profiles = new ConcurrentHashMap<>();
+    private FileChannel channel;
+
+    private PropertiesProfiler(final Mode mode, final Path file) {
+        this.mode = mode;
+        this.file = file;
+    }
+
+    /**
+     * Gets the profiler of the current test run, creating it the first time it is asked for.
+     *
+     * @param context any context of the current test run.
+     * @return the profiler configured for the current test run.
+     * @throws ExtensionConfigurationException if the profiler is misconfigured, or its file cannot be read.
+     */
+    static PropertiesProfiler of(final ExtensionContext context) {
+        return context.getRoot().getStore(NAMESPACE).getOrComputeIfAbsent(
+                PropertiesProfiler.class, key -> configure(context), PropertiesProfiler.class);
+    }
+
+    /**
+     * Checks whether any profile is being recorded. Used to avoid looking up the current thread's profile otherwise.
+     *
+     * @return {@code true} if accesses of System Properties should be recorded.
+     */
+    static boolean isRecording() {
+        return RECORDING.get() > 0;
+    }
+
+    /**
+     * Logs a warning that a test wrote System Properties even though the replayed profile says it never does. The
+     * logger is only looked up when a warning is logged, so that nothing is logged while the System Properties are
+     * being set up.
+     */
+    static void warnOutOfDate() {
+        System.getLogger(PropertiesProfiler.class.getName()).log(WARNING,
+                "System Properties were written by a test that its SystemSafe profile says never writes them, so it "
+                        + "was given a layer of its own. Record the profile again to bring it up to date.");
+    }
+
+    /**
+     * Checks whether this profiler records or replays a profile.
+     *
+     * @return {@code true} unless profiling is off.
+     */
+    boolean isActive() {
+        return mode != Mode.OFF;
+    }
+
+    /**
+     * Starts profiling a test context.
+     *
+     * @param context the test context.
+     * @return a new, empty profile for the test context, or {@code null} if this profiler is not recording.
+     */
+    AccessProfile start(final ExtensionContext context) {
+        return mode == Mode.RECORD ? new AccessProfile(context.getUniqueId()) : null;
+    }
+
+    /**
+     * Finishes profiling a test context, appending its profile to the profile file.
+     *
+     * @param profile the profile returned by {@link #start(ExtensionContext)}, which may be {@code null}.
+     */
+    void finish(final AccessProfile profile) {
+        if (profile == null) return;
+
+        profiles.merge(profile.getId(), profile, PropertiesProfiler::merge);
+        try {
+            var bytes = new ByteArrayOutputStream();
+            profile.writeTo(new DataOutputStream(bytes));
+            append(ByteBuffer.wrap(bytes.toByteArray()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Checks whether a test context is known to never write System Properties, according to the replayed profile.
+     *
+     * @param context the test context.
+     * @return {@code true} if the test context can safely read its parent's properties without a layer of its own.
+     */
+    boolean isReadOnly(final ExtensionContext context) {
+        if (mode != Mode.REPLAY) return false;
+
+        var profile = profiles.get(context.getUniqueId());
+        return profile != null && !profile.isWritten();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Closes the profile file and prints the report of a recorded profile, once every test has run.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mode != Mode.RECORD) return;
+
+        RECORDING.decrementAndGet();
+        synchronized (this) {
+            if (channel != null) channel.close();
+        }
+        System.out.print(report());
+    }
+
+    /**
+     * Reports the keys accessed by the most tests, and the tests that write keys that other tests also access.
+     *
+     * @return the report, as lines of text.
+     */
+    String report() {
+        var readers = new HashMap<String, Integer>();
+        var writers = new HashMap<String, Integer>();
+        for (var profile : profiles.values()) {
+            profile.getReadKeys().forEach(key -> readers.merge(key, 1, Integer::sum));
+            profile.getWrittenKeys().forEach(key -> writers.merge(key, 1, Integer::sum));
+        }
+
+        var keys = new HashSet<>(readers.keySet());
+        keys.addAll(writers.keySet());
+        var report = new StringBuilder(format(
+                "SystemSafe profile of %d test contexts: %d read System Properties, %d wrote them%n",
+                profiles.size(),
+                profiles.values().stream().filter(AccessProfile::isRead).count(),
+                profiles.values().stream().filter(AccessProfile::isWritten).count()));
+
+        report.append(format("Hot keys:%n"));
+        keys.stream()
+            .sorted(comparing((String key) -> -(readers.getOrDefault(key, 0) + writers.getOrDefault(key, 0)))
+                            .thenComparing(key -> key))
+            .limit(HOT_KEYS)
+            .forEach(key -> report.append(format("  %s: read by %d, written by %d%n",
+                    key, readers.getOrDefault(key, 0), writers.getOrDefault(key, 0))));
+
+        report.append(format("Tests writing shared keys:%n"));
+        profiles.values().stream()
+                .sorted(comparing(AccessProfile::getId))
+                .forEach(profile -> {
+                    var shared = profile.getWrittenKeys().stream()
+                            .filter(key -> isShared(key, profile, readers, writers))
+                            .sorted()
+                            .collect(joining(", "));
+                    if (!shared.isEmpty()) report.append(format("  %s: %s%n", profile.getId(), shared));
+                });
+        return report.toString();
+    }
+
+    private static boolean isShared(final String key,
+                                    final AccessProfile profile,
+                                    final Map<String, Integer> readers,
+                                    final Map<String, Integer> writers) {
+        var others = readers.getOrDefault(key, 0) + writers.getOrDefault(key, 0) - 1;
+        if (profile.getReadKeys().contains(key)) others--;
+        return others > 0;
+    }
+
+    private synchronized void append(final ByteBuffer record) throws IOException {
+        if (channel == null) {
+            var parent = file.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            channel = FileChannel.open(file, CREATE, WRITE, APPEND);
+        }
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    private static PropertiesProfiler configure(final ExtensionContext context) {
+        var mode = context.getConfigurationParameter(MODE_PARAMETER)
+                .map(PropertiesProfiler::parseMode)
+                .orElse(Mode.OFF);
+        var file = Path.of(context.getConfigurationParameter(FILE_PARAMETER).orElse(DEFAULT_FILE));
+        var profiler = new PropertiesProfiler(mode, file);
+
+        if (mode == Mode.RECORD) RECORDING.incrementAndGet();
+        if (mode == Mode.REPLAY) profiler.load();
+        return profiler;
+    }
+
+    private static Mode parseMode(final String mode) {
+        try {
+            return Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ExtensionConfigurationException(
+                    format("Unknown %s '%s', expected one of record, replay or off", MODE_PARAMETER, mode), e);
+        }
+    }
+
+    private void load() {
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                input.mark(1);
+                if (input.read() < 0) break;
+                input.reset();
+
+                var profile = AccessProfile.readFrom(input);
+                profiles.merge(profile.getId(), profile, PropertiesProfiler::merge);
+            }
+        } catch (NoSuchFileException e) {
+            throw new ExtensionConfigurationException(
+                    format("No SystemSafe profile found at %s, record one with %s=record first", file, MODE_PARAMETER),
+                    e);
+        } catch (EOFException e) {
+            /* the last record was cut short, so it is ignored */
+        } catch (IOException e) {
+            throw new ExtensionConfigurationException(format("Could not read SystemSafe profile %s", file), e);
+        }
+    }
+
+    private static AccessProfile merge(final AccessProfile first, final AccessProfile second) {
+        var merged = new AccessProfile(first.getId());
+        for (var profile : List.of(first, second)) {
+            if (profile.isRead()) merged.record(false);
+            if (profile.isWritten()) merged.record(true);
+            profile.getReadKeys().forEach(key -> merged.record(key, false));
+            profile.getWrittenKeys().forEach(key -> merged.record(key, true));
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.String.format;
+
+/**
+ * Loads the files named by {@link SystemPropertiesSource} annotations. The contents of each file are parsed into a
+ * {@link FrozenProperties} instance, which is cached along with the file's last modification time, so that a file is
+ * only parsed again if it has changed since it was last loaded.
+ *
+ * @author Harry Dent
+ * @see SystemPropertyOverlays
+ * @since 1.1
+ */
+final class PropertiesSources {
+
+    private static final String CLASSPATH_PREFIX = "classpath:";
+
+    private static final Map<String, CachedSource> SOURCES = new ConcurrentHashMap<>();
+
+    private PropertiesSources() {
+    }
+
+    /**
+     * Loads the properties held in a file, parsing it only if it has not already been parsed in its current state.
+     *
+     * @param location a filesystem path, or a classpath resource name prefixed with {@code classpath:}.
+     * @return the immutable contents of the file.
+     * @throws ExtensionConfigurationException if the file cannot be found or read.
+     */
+    static FrozenProperties load(final String location) {
+        try {
+            if (!location.startsWith(CLASSPATH_PREFIX)) return load(Path.of(location));
+
+            var name = location.substring(CLASSPATH_PREFIX.length());
+            var resource = getClassLoader().getResource(name.startsWith("/") ? name.substring(1) : name);
+            if (resource == null) throw new ExtensionConfigurationException(format("Could not find %s", location));
+            return "file".equals(resource.getProtocol()) ? load(Path.of(resource.toURI())) : load(resource);
+        } catch (IOException | UncheckedIOException | URISyntaxException e) {
+            throw new ExtensionConfigurationException(format("Could not load System Properties from %s", location), e);
+        }
+    }
+
+    private static FrozenProperties load(final Path path) throws IOException {
+        var file = path.toAbsolutePath().normalize();
+        var version = Files.getLastModifiedTime(file).toMillis();
+        return load(file.toString(), version, () -> Files.newInputStream(file));
+    }
+
+    private static FrozenProperties load(final URL resource) throws IOException {
+        var version = resource.openConnection().getLastModified();
+        return load(resource.toString(), version, resource::openStream);
+    }
+
+    private static FrozenProperties load(final String key, final long version, final StreamSupplier stream) {
+        return SOURCES.compute(key, (ignored, cached) -> {
+            if (cached != null && cached.version == version) return cached;
+            return new CachedSource(version, parse(key, stream));
+        }).properties;
+    }
+
+    private static FrozenProperties parse(final String key, final StreamSupplier stream) {
+        var properties = new Properties();
+        try (var in = stream.open()) {
+            if (key.endsWith(".xml")) properties.loadFromXML(in);
+            else properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return FrozenProperties.copyOf(properties);
+    }
+
+    private static ClassLoader getClassLoader() {
+        var classLoader = Thread.currentThread().getContextClassLoader();
+        return classLoader != null ? classLoader : PropertiesSources.class.getClassLoader();
+    }
+
+    @FunctionalInterface
+    private interface StreamSupplier {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * The parsed contents of a file, and the last modification time of the file when it was parsed.
+     */
+    private static final class CachedSource {
+
+        private final long version;
+        private final FrozenProperties properties;
+
+        private CachedSource(final long version, final FrozenProperties properties) {
+            this.version = version;
+            this.properties = Objects.requireNonNull(properties);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.hellproxy;
+
+import jdk.jfr.*;
+
+/**
+ * A JFR event recording a single read or write of a System Property through the {@link PropertiesAdapter}. Grouping
+ * these events by key gives the read and write counts of each property.
+ *
+ * @author Harry Dent
+ * @see PropertiesAdapter
+ * @since 1.1
+ */
+@Name("com.github.hellproxy.PropertyAccess")
+@Label("SystemSafe Property Access")
+@Category("SystemSafe")
+@Description("A read or write of a System Property")
+@Enabled(false)
+@StackTrace(false)
+final class PropertyAccessEvent extends Event {
+
+    @Label("Key")
+    String key;
+
+    @Label("Write")
+    @Description("Whether the property was written to, rather than read")
+    boolean write;
+
+    /**
+     * Records an access of a System Property.
+     *
+     * @param key   the key of the property.
+     * @param write whether the property was written to.
+     */
+    static void record(final Object key, final boolean write) {
+        var event = new PropertyAccessEvent();
+        if (event.isEnabled()) {
+            event.key = String.valueOf(key);
+            event.write = write;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.github.hellproxy;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TimeZone;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@code SystemDefaults} gives each thread a contextual default {@link Locale} and {@link TimeZone}. They are kept in a
+ * thread-local tree of their own, in the same way as {@link SystemEnvironment} keeps the environment, so they are
+ * inherited by child threads and wrapped tasks, and rolled back at the end of each test context, without adding any
+ * entries to the System Properties that tests can see.
+ * <p>
+ * Until a test changes them, the contextual defaults are the same as the JVM's. Setting them also sets the
+ * {@code user.language}, {@code user.script}, {@code user.country}, {@code user.variant} and {@code user.timezone}
+ * System Properties, which the JVM reads its own defaults from when it starts, so that code which reads those
+ * properties agrees with {@link SystemSafe#getLocale()} and {@link SystemSafe#getTimeZone()}. The properties are not
+ * read back, so that a test can set the defaults to any value, including the JVM's own, and so that writing the
+ * properties directly does not change the defaults.
+ *
+ * @author Harry Dent
+ * @see SystemSafe#getLocale()
+ * @see SystemSafe#getTimeZone()
+ * @since 1.1
+ */
+final class SystemDefaults {
+
+    private static final String LANGUAGE = "user.language";
+    private static final String SCRIPT = "user.script";
+    private static final String COUNTRY = "user.country";
+    private static final String VARIANT = "user.variant";
+    private static final String TIMEZONE = "user.timezone";
+
+    /**
+     * The keys that the defaults set by a test are held under in its defaults tree.
+     */
+    private static final String LOCALE_KEY = "locale";
+    private static final String TIMEZONE_KEY = "timezone";
+
+    /**
+     * The defaults seen by threads that are not in a test context, which every defaults tree falls back to once all of
+     * its nodes have been removed. Nothing is ever set in it, so such threads see the JVM's defaults.
+     */
+    private static final PropertiesLayer SHARED_DEFAULTS = PropertiesLayer.over(new Properties());
+
+    private static final ThreadLocalProperties THREAD_LOCAL_DEFAULTS = new ThreadLocalProperties(SHARED_DEFAULTS);
+
+    private SystemDefaults() {
+    }
+
+    /**
+     * Gets the default locale of the current test context.
+     *
+     * @return the locale set in the current thread's defaults tree, or {@link Locale#getDefault()} if it has not been
+     * set.
+     */
+    static Locale getLocale() {
+        var locale = (Locale) THREAD_LOCAL_DEFAULTS.getProperties().get(LOCALE_KEY);
+        return locale != null ? locale : Locale.getDefault();
+    }
+
+    /**
+     * Sets the default locale of the current test context. Its properties are all set in a single step, so that threads
+     * spawned and tasks wrapped by the current thread never see a locale that is only partly set.
+     *
+     * @param locale the new default locale.
+     */
+    static void setLocale(final Locale locale) {
+        requireNonNull(locale);
+        SystemSafe.setProperties(Map.of(
+                LANGUAGE, locale.getLanguage(),
+                SCRIPT, locale.getScript(),
+                COUNTRY, locale.getCountry(),
+                VARIANT, locale.getVariant()));
+        THREAD_LOCAL_DEFAULTS.getWritableProperties().put(LOCALE_KEY, locale);
+    }
+
+    /**
+     * Gets the default time zone of the current test context.
+     *
+     * @return a copy of the time zone set in the current thread's defaults tree, or {@link TimeZone#getDefault()} if it
+     * has not been set.
+     */
+    static TimeZone getTimeZone() {
+        var timeZone = (TimeZone) THREAD_LOCAL_DEFAULTS.getProperties().get(TIMEZONE_KEY);
+        return timeZone != null ? (TimeZone) timeZone.clone() : TimeZone.getDefault();
+    }
+
+    /**
+     * Sets the default time zone of the current test context. A copy of it is kept, as time zones are mutable.
+     *
+     * @param timeZone the new default time zone.
+     */
+    static void setTimeZone(final TimeZone timeZone) {
+        requireNonNull(timeZone);
+        System.setProperty(TIMEZONE, timeZone.getID());
+        THREAD_LOCAL_DEFAULTS.getWritableProperties().put(TIMEZONE_KEY, timeZone.clone());
+    }
+
+    /**
+     * Adds the provided defaults to the current thread's defaults tree.
+     *
+     * @param defaults the defaults to add to the defaults tree.
+     * @return the {@link PropertiesNode} that now holds {@code defaults}.
+     */
+    static PropertiesNode addDefaults(final Properties defaults) {
+        return THREAD_LOCAL_DEFAULTS.addProperties(defaults);
+    }
+
+    /**
+     * Releases the head of the current thread's defaults tree, at the end of a test context.
+     *
+     * @see ThreadLocalProperties#releaseProperties()
+     */
+    static void removeDefaults() {
+        THREAD_LOCAL_DEFAULTS.releaseProperties();
+    }
+
+    /**
+     * Gets the defaults for threads that are not in a test context.
+     *
+     * @return a {@link PropertiesLayer} that nothing is set in.
+     */
+    static Properties getSharedDefaults() {
+        return SHARED_DEFAULTS;
+    }
+
+    /**
+     * Gets the current thread's defaults tree node.
+     *
+     * @return the node that the current thread is using.
+     */
+    static PropertiesNode getNode() {
+        return THREAD_LOCAL_DEFAULTS.get();
+    }
+
+    /**
+     * Creates a defaults node for a task that is going to run on another thread.
+     *
+     * @return a new {@link PropertiesNode} that inherits the current thread's defaults.
+     * @see PropertiesAdapter#inheritProperties()
+     */
+    static PropertiesNode inheritDefaults() {
+        return THREAD_LOCAL_DEFAULTS.inherit();
+    }
+
+    /**
+     * Replaces the current thread's defaults tree node.
+     *
+     * @param node the node that the current thread should use from now on.
+     * @return the node that the current thread was using before.
+     */
+    static PropertiesNode swapDefaults(final PropertiesNode node) {
+        var previous = THREAD_LOCAL_DEFAULTS.get();
+        THREAD_LOCAL_DEFAULTS.set(node);
+        return previous;
+    }
+
+    /**
+     * Creates a clean defaults node, which falls back to the shared defaults.
+     *
+     * @return a new {@link PropertiesNode}, not yet installed on any thread.
+     * @see PropertiesAdapter#cleanProperties()
+     */
+    static PropertiesNode cleanDefaults() {
+        return THREAD_LOCAL_DEFAULTS.initialValue();
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.hellproxy;
+
+import java.util.Properties;
+
+/**
+ * {@code SystemEnvironment} gives each thread a contextual view of the System environment, using the same kind of
+ * thread-local tree as {@link PropertiesAdapter} does for System Properties. Unlike the System Properties, the
+ * environment returned by {@link System#getenv()} cannot be replaced, so the contextual environment is only visible
+ * through {@link SystemSafe#getenv(String)} and related methods.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+final class SystemEnvironment {
+
+    /**
+     * A frozen copy of the JVM's environment, shared as the base of every environment tree.
+     */
+    private static final FrozenProperties INITIAL_ENVIRONMENT = FrozenProperties.copyOf(System.getenv());
+
+    /**
+     * The environment seen by threads that are not in a test context, which every environment tree falls back to once
+     * all of its nodes have been removed.
+     */
+    private static final PropertiesLayer SHARED_ENVIRONMENT = PropertiesLayer.over(INITIAL_ENVIRONMENT);
+
+    private static final ThreadLocalProperties THREAD_LOCAL_ENVIRONMENT = new ThreadLocalProperties(SHARED_ENVIRONMENT);
+
+    private SystemEnvironment() {
+    }
+
+    /**
+     * Gets the environment for threads that are not in a test context. It is mutable and shared among all such
+     * threads.
+     *
+     * @return a {@link PropertiesLayer} on top of the JVM's environment.
+     */
+    static Properties getSharedEnvironment() {
+        return SHARED_ENVIRONMENT;
+    }
+
+    /**
+     * Adds the provided environment to the current thread's environment tree.
+     *
+     * @param environment the environment variables to add to the environment tree.
+     * @return the {@link PropertiesNode} that now holds {@code environment}.
+     */
+    static PropertiesNode addEnvironment(final Properties environment) {
+        return THREAD_LOCAL_ENVIRONMENT.addProperties(environment);
+    }
+
+    /**
+     * Releases the head of the current thread's environment tree, at the end of a test context.
+     *
+     * @see ThreadLocalProperties#releaseProperties()
+     */
+    static void removeEnvironment() {
+        THREAD_LOCAL_ENVIRONMENT.releaseProperties();
+    }
+
+    /**
+     * Gets the environment at the head of the current thread's environment tree.
+     *
+     * @return the environment variables local to the current thread.
+     */
+    static Properties getEnvironment() {
+        return THREAD_LOCAL_ENVIRONMENT.getProperties();
+    }
+
+    /**
+     * Gets the environment at the head of the current thread's environment tree, in a form that can be written to.
+     *
+     * @return the writable environment variables local to the current thread.
+     */
+    static Properties getWritableEnvironment() {
+        return THREAD_LOCAL_ENVIRONMENT.getWritableProperties();
+    }
+
+    /**
+     * Creates an environment node for a task that is going to run on another thread.
+     *
+     * @return a new {@link PropertiesNode} that inherits the current thread's environment.
+     * @see PropertiesAdapter#inheritProperties()
+     */
+    static PropertiesNode inheritEnvironment() {
+        return THREAD_LOCAL_ENVIRONMENT.inherit();
+    }
+
+    /**
+     * Replaces the current thread's environment tree node.
+     *
+     * @param node the node that the current thread should use from now on.
+     * @return the node that the current thread was using before.
+     */
+    static PropertiesNode swapEnvironment(final PropertiesNode node) {
+        var previous = THREAD_LOCAL_ENVIRONMENT.get();
+        THREAD_LOCAL_ENVIRONMENT.set(node);
+        return previous;
+    }
+
+    /**
+     * Creates a clean environment node, which falls back to the shared environment.
+     *
+     * @return a new {@link PropertiesNode}, not yet installed on any thread.
+     * @see PropertiesAdapter#cleanProperties()
+     */
+    static PropertiesNode cleanEnvironment() {
+        return THREAD_LOCAL_ENVIRONMENT.initialValue();
+    }
+}
@@ -0,0 +1,146 @@
+package com.github.hellproxy;
+
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+
+/**
+ * {@code SystemOutput} gives each thread a contextual standard output and standard error stream. A
+ * {@link PrintStreamAdapter} is installed once in place of each of {@code System.out} and {@code System.err}, and
+ * passes every call on to the streams of the current thread's test context, if it has one.
+ * <p>
+ * Output trees are inherited in the same way as properties trees, except that a child thread shares its parent's node,
+ * so that whatever it writes is captured along with the rest of its parent's output.
+ * <p>
+ * Captured output is encoded, and decoded again, with the charsets of the original streams, so that it reaches the
+ * console exactly as it would have without SystemSafe.
+ *
+ * @author Harry Dent
+ * @see OutputNode
+ * @since 1.1
+ */
+final class SystemOutput {
+
+    private static final PrintStream ORIGINAL_OUT = System.out;
+    private static final PrintStream ORIGINAL_ERR = System.err;
+    private static final Charset OUT_CHARSET = charsetOf(ORIGINAL_OUT, "sun.stdout.encoding");
+    private static final Charset ERR_CHARSET = charsetOf(ORIGINAL_ERR, "sun.stderr.encoding");
+
+    private static final InheritableThreadLocal<OutputNode> THREAD_LOCAL_OUTPUT = new InheritableThreadLocal<>() {
+        @Override
+        protected OutputNode initialValue() {
+            return new OutputNode(null, null);
+        }
+
+        @Override
+        protected OutputNode childValue(final OutputNode parentValue) {
+            return WorkerThreads.isCreatingClean() ? initialValue() : parentValue;
+        }
+    };
+
+    private SystemOutput() {
+    }
+
+    /**
+     * Replaces {@code System.out} and {@code System.err} with adapters that write to the current thread's streams.
+     */
+    static void install() {
+        System.setOut(new PrintStreamAdapter(ORIGINAL_OUT, SystemOutput::getOut));
+        System.setErr(new PrintStreamAdapter(ORIGINAL_ERR, SystemOutput::getErr));
+    }
+
+    /**
+     * Adds a new output capture to the current thread's output tree.
+     *
+     * @param limit the most bytes to capture from each stream.
+     * @return the {@link OutputNode} that now holds the new capture.
+     */
+    static OutputNode addCapture(final int limit) {
+        var head = THREAD_LOCAL_OUTPUT.get().getHead();
+        var capture = new OutputCapture(ORIGINAL_OUT, OUT_CHARSET, ORIGINAL_ERR, ERR_CHARSET, limit);
+        var node = new OutputNode(head, capture);
+        THREAD_LOCAL_OUTPUT.set(node);
+        return node;
+    }
+
+    /**
+     * Removes the head of the current thread's output tree, and releases the capture it held.
+     */
+    static void removeCapture() {
+        var head = THREAD_LOCAL_OUTPUT.get().getHead();
+        if (head == null) return;
+
+        head.remove();
+        var newHead = head.getHead();
+        THREAD_LOCAL_OUTPUT.set(newHead != null ? newHead : head);
+    }
+
+    /**
+     * Gets the output capture at the head of the current thread's output tree.
+     *
+     * @return an {@link OutputCapture}, or {@code null} if the current thread is not in a test context.
+     */
+    static OutputCapture getCapture() {
+        return THREAD_LOCAL_OUTPUT.get().getCapture();
+    }
+
+    /**
+     * Gets the node that a task running on another thread should use, so that its output is captured along with the
+     * current thread's.
+     *
+     * @return the current thread's {@link OutputNode}.
+     */
+    static OutputNode inheritOutput() {
+        return THREAD_LOCAL_OUTPUT.get();
+    }
+
+    /**
+     * Replaces the current thread's output tree node.
+     *
+     * @param node the node that the current thread should use from now on.
+     * @return the node that the current thread was using before.
+     */
+    static OutputNode swapOutput(final OutputNode node) {
+        var previous = THREAD_LOCAL_OUTPUT.get();
+        THREAD_LOCAL_OUTPUT.set(node);
+        return previous;
+    }
+
+    /**
+     * Creates a clean output node, whose output is not captured by any test.
+     *
+     * @return a new {@link OutputNode}, not yet installed on any thread.
+     */
+    static OutputNode cleanOutput() {
+        return new OutputNode(null, null);
+    }
+
+    private static PrintStream getOut() {
+        var capture = getCapture();
+        return capture != null ? capture.getOut() : ORIGINAL_OUT;
+    }
+
+    private static PrintStream getErr() {
+        var capture = getCapture();
+        return capture != null ? capture.getErr() : ORIGINAL_ERR;
+    }
+
+    /**
+     * Gets the charset that one of the original streams encodes characters with. {@code PrintStream} only exposes its
+     * charset from Java 18 onwards. Before then, the JVM encodes its standard streams with the charset named by a
+     * System Property, if it is set, or with the default charset otherwise.
+     *
+     * @param original the original stream.
+     * @param property the System Property that names the original stream's encoding before Java 18.
+     * @return the charset of {@code original}.
+     */
+    private static Charset charsetOf(final PrintStream original, final String property) {
+        try {
+            return (Charset) PrintStream.class.getMethod("charset").invoke(original);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            var encoding = SystemSafeExtension.getInitialSystemProperties().getProperty(property);
+            return encoding != null && Charset.isSupported(encoding)
+                    ? Charset.forName(encoding)
+                    : Charset.defaultCharset();
+        }
+    }
+}
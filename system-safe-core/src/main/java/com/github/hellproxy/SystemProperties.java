@@ -0,0 +1,21 @@
+package com.github.hellproxy;
+
+import java.lang.annotation.*;
+
+/**
+ * Contains the {@link SystemProperty} annotations repeated on a test class or test method.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+@Inherited
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface SystemProperties {
+
+    /**
+     * @return the repeated annotations.
+     */
+    SystemProperty[] value();
+}
@@ -0,0 +1,29 @@
+package com.github.hellproxy;
+
+import java.lang.annotation.*;
+
+/**
+ * Loads System Properties from one or more {@code .properties} or XML files for the annotated test class or test
+ * method. Each location is either a path on the filesystem, or the name of a classpath resource prefixed with
+ * {@code classpath:}. Files ending in {@code .xml} are read with {@link java.util.Properties#loadFromXML}, and all
+ * others with {@link java.util.Properties#load(java.io.InputStream)}.
+ * <p>
+ * Each file is only parsed once, however many tests load it, unless it is modified in the meantime. Properties loaded
+ * from later files override those loaded from earlier ones, and any {@link SystemProperty} or
+ * {@link ClearSystemProperty} annotations on the same element override them all.
+ *
+ * @author Harry Dent
+ * @see SystemSafeExtension
+ * @since 1.1
+ */
+@Inherited
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface SystemPropertiesSource {
+
+    /**
+     * @return the locations of the files to load.
+     */
+    String[] value();
+}
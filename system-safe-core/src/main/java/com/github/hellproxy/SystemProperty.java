@@ -0,0 +1,32 @@
+package com.github.hellproxy;
+
+import java.lang.annotation.*;
+
+/**
+ * Sets a System Property for the annotated test class or test method. Properties set on a test class are visible to
+ * every test in it, and can be overridden by the annotations of each test method.
+ * <p>
+ * The annotations of each class and method are only resolved once, however many times the tests are run.
+ *
+ * @author Harry Dent
+ * @see ClearSystemProperty
+ * @see SystemSafeExtension
+ * @since 1.1
+ */
+@Inherited
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Repeatable(SystemProperties.class)
+public @interface SystemProperty {
+
+    /**
+     * @return the key of the System Property to set.
+     */
+    String key();
+
+    /**
+     * @return the value of the System Property to set.
+     */
+    String value();
+}
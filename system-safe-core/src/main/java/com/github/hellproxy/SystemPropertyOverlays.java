@@ -0,0 +1,175 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Member;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static org.junit.platform.commons.support.AnnotationSupport.findAnnotation;
+import static org.junit.platform.commons.support.AnnotationSupport.findRepeatableAnnotations;
+
+/**
+ * Resolves the {@link SystemPropertiesSource}, {@link SystemProperty} and {@link ClearSystemProperty} annotations of
+ * test classes and test methods into overlays, which are cached so that the annotations of each class or method are
+ * only ever resolved once. Every run of a test shares the same overlays, so repeated and parameterized tests cost no
+ * more to set up than any other test.
+ * <p>
+ * The overlays are cached in a {@link ClassValue}, for the test class and those of its methods that have any of the
+ * annotations, when the class is first looked up. The cache is held by the class itself, so it never keeps a test class
+ * or its class loader reachable, and classes and methods without annotations take up no entries at all.
+ * <p>
+ * The files named by {@link SystemPropertiesSource} may be edited while the tests are running, so they are looked up
+ * again whenever the overlays are asked for with a new check token, which the extension creates once per test class
+ * context. Looking a file up again costs a resource lookup and a file or jar stat, so the test methods of a class share
+ * its token rather than each checking the files again. The cached overlays are only replaced if one of the files has
+ * changed since it was loaded.
+ *
+ * @author Harry Dent
+ * @see PropertiesLayer#frozenOver(java.util.Properties, Map)
+ * @since 1.1
+ */
+final class SystemPropertyOverlays {
+
+    private static final ClassValue<Map<AnnotatedElement, ResolvedElement>> OVERLAYS = new ClassValue<>() {
+        @Override
+        protected Map<AnnotatedElement, ResolvedElement> computeValue(final Class<?> type) {
+            Map<AnnotatedElement, ResolvedElement> resolved = new HashMap<>();
+            if (isAnnotated(type)) resolved.put(type, new ResolvedElement(type));
+            for (var method : type.getDeclaredMethods()) {
+                if (isAnnotated(method)) resolved.put(method, new ResolvedElement(method));
+            }
+            return resolved.isEmpty() ? Map.of() : Map.copyOf(resolved);
+        }
+    };
+
+    private SystemPropertyOverlays() {
+    }
+
+    /**
+     * Gets the overlays declared by the annotations of a test class or test method. The properties loaded from each
+     * {@link SystemPropertiesSource} file come first, in the order they were declared, followed by the properties set
+     * or removed by the other annotations.
+     *
+     * @param element the annotated test class or test method.
+     * @return the immutable overlays to stack, from the bottom up, which are empty if {@code element} has no
+     * annotations. The same instance is returned every time, until one of the files is modified. The files are checked
+     * for changes on every call.
+     * @throws ExtensionConfigurationException if the same key is set or removed more than once, or if a file cannot be
+     *                                         loaded.
+     */
+    static List<Map<Object, Object>> of(final AnnotatedElement element) {
+        return of(element, new Object());
+    }
+
+    /**
+     * Gets the overlays declared by the annotations of a test class or test method, only checking its files for changes
+     * if they have not already been checked with the same token.
+     *
+     * @param element the annotated test class or test method.
+     * @param check   the token that the files were last checked with, or a new one to check them again.
+     * @return the immutable overlays to stack, from the bottom up, as for {@link #of(AnnotatedElement)}.
+     * @throws ExtensionConfigurationException if the same key is set or removed more than once, or if a file cannot be
+     *                                         loaded.
+     */
+    static List<Map<Object, Object>> of(final AnnotatedElement element, final Object check) {
+        var resolved = OVERLAYS.get(declaringClassOf(element)).get(element);
+        return resolved != null ? resolved.getOverlays(check) : List.of();
+    }
+
+    private static Class<?> declaringClassOf(final AnnotatedElement element) {
+        return element instanceof Class ? (Class<?>) element : ((Member) element).getDeclaringClass();
+    }
+
+    private static boolean isAnnotated(final AnnotatedElement element) {
+        return findAnnotation(element, SystemPropertiesSource.class).isPresent()
+                || !findRepeatableAnnotations(element, SystemProperty.class).isEmpty()
+                || !findRepeatableAnnotations(element, ClearSystemProperty.class).isEmpty();
+    }
+
+    private static Map<Object, Object> resolveProperties(final AnnotatedElement element) {
+        Map<String, String> values = new HashMap<>();
+        var removed = new LinkedHashSet<String>();
+
+        for (var property : findRepeatableAnnotations(element, SystemProperty.class)) {
+            if (values.put(property.key(), property.value()) != null) throw duplicate(element, property.key());
+        }
+        for (var property : findRepeatableAnnotations(element, ClearSystemProperty.class)) {
+            if (values.containsKey(property.key()) || !removed.add(property.key())) {
+                throw duplicate(element, property.key());
+            }
+        }
+        return PropertiesLayer.overlayOf(values, removed);
+    }
+
+    private static ExtensionConfigurationException duplicate(final AnnotatedElement element, final String key) {
+        return new ExtensionConfigurationException(
+                format("System Property '%s' is declared more than once on %s", key, element));
+    }
+
+    /**
+     * The resolved annotations of a test class or test method, and the overlays built from the files it loaded most
+     * recently. Annotations that cannot be resolved are only reported once the element's overlays are asked for, so
+     * that they never stop the other methods of the same class from being resolved.
+     */
+    private static final class ResolvedElement {
+
+        private final String[] locations;
+        private final Map<Object, Object> properties;
+        private final ExtensionConfigurationException invalid;
+        private volatile List<Map<Object, Object>> overlays;
+        private volatile Object checked;
+
+        private ResolvedElement(final AnnotatedElement element) {
+            this.locations = findAnnotation(element, SystemPropertiesSource.class)
+                    .map(SystemPropertiesSource::value)
+                    .orElse(new String[0]);
+            Map<Object, Object> properties = Map.of();
+            ExtensionConfigurationException invalid = null;
+            try {
+                properties = resolveProperties(element);
+            } catch (ExtensionConfigurationException e) {
+                invalid = e;
+            }
+            this.properties = properties;
+            this.invalid = invalid;
+            this.overlays = locations.length == 0 ? build(List.of()) : null;
+        }
+
+        /**
+         * Gets the overlays of the element, loading its files again if they have not been checked with the supplied
+         * token yet. {@link PropertiesSources} returns the same instance for a file until it is modified, so the cached
+         * overlays can be reused as long as every file loads as the same instance as last time.
+         */
+        private List<Map<Object, Object>> getOverlays(final Object check) {
+            if (invalid != null) throw invalid;
+
+            var cached = overlays;
+            if (locations.length == 0 || (cached != null && checked == check)) return cached;
+
+            List<Map<Object, Object>> sources = new ArrayList<>(locations.length);
+            var changed = cached == null;
+            for (var i = 0; i < locations.length; i++) {
+                var source = PropertiesSources.load(locations[i]);
+                changed = changed || cached.get(i) != source;
+                sources.add(source);
+            }
+            if (changed) cached = overlays = build(sources);
+            checked = check;
+            return cached;
+        }
+
+        private List<Map<Object, Object>> build(final List<Map<Object, Object>> sources) {
+            if (properties.isEmpty()) return List.copyOf(sources);
+
+            List<Map<Object, Object>> overlays = new ArrayList<>(sources);
+            overlays.add(properties);
+            return List.copyOf(overlays);
+        }
+    }
+}
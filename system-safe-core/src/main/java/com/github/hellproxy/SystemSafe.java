@@ -0,0 +1,344 @@
+package com.github.hellproxy;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@code SystemSafe} carries a thread's System Properties over to tasks that run on other, already running threads,
+ * such as the workers of a thread pool. A new thread inherits the properties of the thread that spawned it, but a
+ * pooled thread only ever sees whatever it inherited when it was first spawned.
+ * <p>
+ * A wrapped task captures the properties of the thread that wraps it, and uses them for as long as it runs. Any changes
+ * it makes to them are not visible to the thread that wrapped it, just as with a spawned child thread. Chains of
+ * {@link CompletableFuture} stages started with {@link #supplyAsync(Supplier)} or {@link #runAsync(Runnable)} have each
+ * of their async stages wrapped in the same way.
+ * <p>
+ * {@code SystemSafe} also gives each test its own view of the System environment. The JVM's environment cannot be
+ * changed, so code that should see a test's environment variables has to read them with {@link #getenv(String)} or
+ * {@link #getenv()} rather than with {@link System#getenv(String)}.
+ * <p>
+ * Finally, everything a test writes to {@code System.out} and {@code System.err} is captured separately from every
+ * other test, and can be read back with {@link #getCapturedOut()} and {@link #getCapturedErr()}. Captured output is
+ * still passed on to the original streams. Only the first megabyte of each stream is captured per test, unless the
+ * {@code systemsafe.output.limit} configuration parameter sets a different number of bytes.
+ * <p>
+ * {@link Locale#setDefault(Locale)} and {@link TimeZone#setDefault(TimeZone)} change JVM-wide state that cannot be
+ * intercepted. Tests should use {@link #setLocale(Locale)} and {@link #setTimeZone(TimeZone)} instead, and code under
+ * test should read the defaults with {@link #getLocale()} and {@link #getTimeZone()}.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+public final class SystemSafe {
+
+    private SystemSafe() {
+    }
+
+    /**
+     * Wraps a task, so that it runs with the current thread's System Properties.
+     *
+     * @param task the task to wrap.
+     * @return a {@link Runnable} that runs {@code task} with the properties of the current thread.
+     */
+    public static Runnable wrap(final Runnable task) {
+        requireNonNull(task);
+        var context = CapturedContext.capture();
+
+        return () -> {
+            var previous = context.install();
+            try {
+                task.run();
+            } finally {
+                previous.install();
+            }
+        };
+    }
+
+    /**
+     * Wraps a task, so that it runs with the current thread's System Properties.
+     *
+     * @param task the task to wrap.
+     * @param <V>  the result type of {@code task}.
+     * @return a {@link Callable} that calls {@code task} with the properties of the current thread.
+     */
+    public static <V> Callable<V> wrap(final Callable<V> task) {
+        requireNonNull(task);
+        var context = CapturedContext.capture();
+
+        return () -> {
+            var previous = context.install();
+            try {
+                return task.call();
+            } finally {
+                previous.install();
+            }
+        };
+    }
+
+    /**
+     * Gets the value of an environment variable, as seen by the current test context.
+     *
+     * @param name the name of the environment variable.
+     * @return the value of the variable, or {@code null} if it is not defined.
+     * @see System#getenv(String)
+     */
+    public static String getenv(final String name) {
+        return SystemEnvironment.getEnvironment().getProperty(requireNonNull(name));
+    }
+
+    /**
+     * Gets every environment variable, as seen by the current test context.
+     *
+     * @return an unmodifiable copy of the current environment.
+     * @see System#getenv()
+     */
+    public static Map<String, String> getenv() {
+        Map<String, String> environment = new HashMap<>();
+        SystemEnvironment.getEnvironment().forEach((name, value) -> environment.put((String) name, (String) value));
+        return unmodifiableMap(environment);
+    }
+
+    /**
+     * Sets an environment variable for the current test context. The change is visible to the current thread and any
+     * threads it goes on to spawn, until the test context ends.
+     *
+     * @param name  the name of the environment variable.
+     * @param value the value of the environment variable.
+     * @return the previous value of the variable, or {@code null} if it was not defined.
+     */
+    public static String setenv(final String name, final String value) {
+        return (String) SystemEnvironment.getWritableEnvironment().put(requireNonNull(name), requireNonNull(value));
+    }
+
+    /**
+     * Removes an environment variable for the current test context. The change is visible to the current thread and
+     * any threads it goes on to spawn, until the test context ends.
+     *
+     * @param name the name of the environment variable.
+     * @return the previous value of the variable, or {@code null} if it was not defined.
+     */
+    public static String unsetenv(final String name) {
+        return (String) SystemEnvironment.getWritableEnvironment().remove(requireNonNull(name));
+    }
+
+    /**
+     * Gets everything that the current test has written to {@code System.out} so far, including output from threads it
+     * has spawned and tasks it has wrapped.
+     *
+     * @return the captured output, ending with a note of how many bytes were not captured if the test wrote more than
+     * the limit, or an empty string if the current thread is not in a test context.
+     */
+    public static String getCapturedOut() {
+        var capture = SystemOutput.getCapture();
+        return capture != null ? capture.getCapturedOut() : "";
+    }
+
+    /**
+     * Gets everything that the current test has written to {@code System.err} so far, including output from threads it
+     * has spawned and tasks it has wrapped.
+     *
+     * @return the captured output, ending with a note of how many bytes were not captured if the test wrote more than
+     * the limit, or an empty string if the current thread is not in a test context.
+     */
+    public static String getCapturedErr() {
+        var capture = SystemOutput.getCapture();
+        return capture != null ? capture.getCapturedErr() : "";
+    }
+
+    /**
+     * Gets the default locale, as seen by the current test context.
+     *
+     * @return the locale set by the current test, or {@link Locale#getDefault()} if it has not set one.
+     * @see #setLocale(Locale)
+     */
+    public static Locale getLocale() {
+        return SystemDefaults.getLocale();
+    }
+
+    /**
+     * Sets the default locale for the current test context. The change is visible to the current thread and any
+     * threads it goes on to spawn, until the test context ends. The {@code user.language}, {@code user.script},
+     * {@code user.country} and {@code user.variant} System Properties are set to match.
+     * <p>
+     * Only code that reads the default through {@link #getLocale()} is isolated. {@link Locale#getDefault()} still
+     * returns the JVM's default, so library code that calls it, such as {@link String#format(String, Object...)} or
+     * {@link java.text.NumberFormat#getInstance()}, does not see the locale set here.
+     *
+     * @param locale the new default locale.
+     */
+    public static void setLocale(final Locale locale) {
+        SystemDefaults.setLocale(locale);
+    }
+
+    /**
+     * Gets the default time zone, as seen by the current test context.
+     *
+     * @return the time zone set by the current test, or {@link TimeZone#getDefault()} if it has not set one.
+     * @see #setTimeZone(TimeZone)
+     */
+    public static TimeZone getTimeZone() {
+        return SystemDefaults.getTimeZone();
+    }
+
+    /**
+     * Sets the default time zone for the current test context. The change is visible to the current thread and any
+     * threads it goes on to spawn, until the test context ends. The {@code user.timezone} System Property is set to
+     * match.
+     * <p>
+     * Only code that reads the default through {@link #getTimeZone()} is isolated. {@link TimeZone#getDefault()} still
+     * returns the JVM's default, so library code that calls it, such as {@link java.util.Calendar#getInstance()} or
+     * {@link java.time.ZoneId#systemDefault()}, does not see the time zone set here.
+     *
+     * @param timeZone the new default time zone.
+     */
+    public static void setTimeZone(final TimeZone timeZone) {
+        SystemDefaults.setTimeZone(timeZone);
+    }
+
+    /**
+     * Creates an overlay of System Properties, which can be applied to the current thread without the JUnit lifecycle,
+     * for example in benchmarks or in suites run by another test framework.
+     *
+     * @param properties the System Properties to set while the overlay is applied.
+     * @return a reusable {@link PropertiesOverlay}.
+     * @see PropertiesOverlay#run(Runnable)
+     * @see PropertiesOverlay#open()
+     */
+    public static PropertiesOverlay with(final Map<String, String> properties) {
+        return PropertiesOverlay.of(requireNonNull(properties), emptyList());
+    }
+
+    /**
+     * Creates an overlay of System Properties to set and to clear, which can be applied to the current thread without
+     * the JUnit lifecycle.
+     *
+     * @param properties the System Properties to set while the overlay is applied.
+     * @param cleared    the keys of the System Properties to clear while the overlay is applied.
+     * @return a reusable {@link PropertiesOverlay}.
+     * @throws IllegalArgumentException if a key is both set and cleared.
+     * @see PropertiesOverlay#apply()
+     */
+    public static PropertiesOverlay with(final Map<String, String> properties, final Collection<String> cleared) {
+        return PropertiesOverlay.of(requireNonNull(properties), requireNonNull(cleared));
+    }
+
+    /**
+     * Sets several System Properties of the current thread in a single step. A thread spawned by the current thread
+     * sees either all of them or none of them, unlike with separate calls to {@link System#setProperty}.
+     *
+     * @param properties the System Properties to set.
+     * @see PropertiesOverlay#apply()
+     */
+    public static void setProperties(final Map<String, String> properties) {
+        with(properties).apply();
+    }
+
+    /**
+     * Wraps an executor, so that every task submitted to it runs with the System Properties of the thread that
+     * submitted it.
+     *
+     * @param executor the executor to wrap.
+     * @return an {@link ExecutorService} that wraps each task with {@link #wrap(Runnable)} or
+     * {@link #wrap(Callable)} before handing it to {@code executor}.
+     */
+    public static ExecutorService wrap(final ExecutorService executor) {
+        return new SystemSafeExecutorService(requireNonNull(executor));
+    }
+
+    /**
+     * Runs a task asynchronously, like {@link CompletableFuture#supplyAsync(Supplier)}, with the current thread's
+     * System Properties. The async stages that depend on the returned future run with the properties of the stage
+     * before them, so a whole chain of stages sees the current thread's properties, while running in parallel on
+     * pooled threads.
+     *
+     * @param supplier the task to run.
+     * @param <U>      the result type of {@code supplier}.
+     * @return a new {@link CompletableFuture} that is completed with the result of {@code supplier}.
+     * @see SystemSafeForkJoinWorkerThreadFactory
+     */
+    public static <U> CompletableFuture<U> supplyAsync(final Supplier<U> supplier) {
+        return supplyAsync(supplier, SystemSafeFuture.ASYNC_POOL);
+    }
+
+    /**
+     * Runs a task asynchronously on an executor, like {@link CompletableFuture#supplyAsync(Supplier, Executor)}, with
+     * the current thread's System Properties. The executor also runs the async stages that depend on the returned
+     * future, unless they are given an executor of their own.
+     *
+     * @param supplier the task to run.
+     * @param executor the executor to run the task, and the async stages that depend on it, with.
+     * @param <U>      the result type of {@code supplier}.
+     * @return a new {@link CompletableFuture} that is completed with the result of {@code supplier}.
+     * @see #supplyAsync(Supplier)
+     */
+    public static <U> CompletableFuture<U> supplyAsync(final Supplier<U> supplier, final Executor executor) {
+        requireNonNull(supplier);
+        return new SystemSafeFuture<U>(requireNonNull(executor)).completeAsync(supplier);
+    }
+
+    /**
+     * Runs a task asynchronously, like {@link CompletableFuture#runAsync(Runnable)}, with the current thread's System
+     * Properties.
+     *
+     * @param task the task to run.
+     * @return a new {@link CompletableFuture} that is completed once {@code task} has run.
+     * @see #supplyAsync(Supplier)
+     */
+    public static CompletableFuture<Void> runAsync(final Runnable task) {
+        return runAsync(task, SystemSafeFuture.ASYNC_POOL);
+    }
+
+    /**
+     * Runs a task asynchronously on an executor, like {@link CompletableFuture#runAsync(Runnable, Executor)}, with the
+     * current thread's System Properties.
+     *
+     * @param task     the task to run.
+     * @param executor the executor to run the task, and the async stages that depend on it, with.
+     * @return a new {@link CompletableFuture} that is completed once {@code task} has run.
+     * @see #supplyAsync(Supplier, Executor)
+     */
+    public static CompletableFuture<Void> runAsync(final Runnable task, final Executor executor) {
+        requireNonNull(task);
+        return supplyAsync(() -> {
+            task.run();
+            return null;
+        }, executor);
+    }
+
+    /**
+     * Gets how many thread-local properties trees have been released because the test they were inherited from ended
+     * while their threads lived on, as pooled threads and still running wrapped tasks do. A released thread is put on
+     * top of a private snapshot of the System Properties of the enclosing test context, or of those shared by threads
+     * outside any test, keeping only the properties it wrote itself, so that nothing it writes is seen by any other
+     * thread. Closing a {@link PropertiesOverlay.Scope} never releases anything, so tasks still running with the
+     * scope's properties keep them until the test ends.
+     *
+     * @return the total number of properties trees released so far.
+     */
+    public static long getReleasedNodes() {
+        return PropertiesNode.getReleasedNodes();
+    }
+
+    /**
+     * Gets how many System Properties of finished tests were held by the snapshots that released properties trees had
+     * inherited, and are no longer retained by them. Together with {@link #getReleasedNodes()}, this measures how much
+     * memory the release of finished tests' properties has reclaimed.
+     *
+     * @return the total number of properties released so far.
+     */
+    public static long getReleasedProperties() {
+        return PropertiesNode.getReleasedProperties();
+    }
+}
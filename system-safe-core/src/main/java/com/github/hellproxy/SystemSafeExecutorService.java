@@ -0,0 +1,97 @@
+package com.github.hellproxy;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * An {@link ExecutorService} that wraps every task submitted to it with {@link SystemSafe#wrap(Runnable)} or
+ * {@link SystemSafe#wrap(Callable)}, before handing it to the executor it delegates to.
+ *
+ * @author Harry Dent
+ * @see SystemSafe#wrap(ExecutorService)
+ * @since 1.1
+ */
+class SystemSafeExecutorService implements ExecutorService {
+
+    private final ExecutorService delegate;
+
+    SystemSafeExecutorService(final ExecutorService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        delegate.execute(SystemSafe.wrap(command));
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return delegate.submit(SystemSafe.wrap(task));
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        return delegate.submit(SystemSafe.wrap(task), result);
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return delegate.submit(SystemSafe.wrap(task));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        return delegate.invokeAll(wrapAll(tasks));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return delegate.invokeAll(wrapAll(tasks), timeout, unit);
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+        return delegate.invokeAny(wrapAll(tasks));
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return delegate.invokeAny(wrapAll(tasks), timeout, unit);
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    private static <T> List<Callable<T>> wrapAll(final Collection<? extends Callable<T>> tasks) {
+        return tasks.stream()
+                .map(SystemSafe::wrap)
+                .collect(toList());
+    }
+}
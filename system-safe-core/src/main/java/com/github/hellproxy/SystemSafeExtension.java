@@ -3,13 +3,31 @@ package com.github.hellproxy;
 import org.junit.jupiter.api.extension.*;
 import org.junit.jupiter.api.extension.ExtensionContext.Namespace;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
+import static java.lang.String.format;
+import static java.util.Collections.emptyList;
 import static org.junit.jupiter.api.extension.ExtensionContext.Namespace.create;
 
 /**
  * {@code SystemSafeExtension} is a JUnit 5 Extension that prevents unintended side-effects of getting and setting
- * System Properties in tests that are executed concurrently.
+ * System Properties in tests that are executed concurrently. Each test also gets its own view of the System
+ * environment, which can be read and changed through {@link SystemSafe}, and its own capture of everything written to
+ * {@code System.out} and {@code System.err}.
+ * <p>
+ * Each callback is recorded as a {@link LifecycleEvent} when JFR is recording with SystemSafe's events enabled. All of
+ * them are disabled by default.
+ * <p>
+ * Which tests access System Properties can be recorded and replayed with a {@link PropertiesProfiler}, configured with
+ * JUnit configuration parameters, so that tests that never write them can skip setting up a layer of their own.
+ * <p>
+ * How much each test context's setup and teardown cost can be reported with an {@link OverheadReport}, also
+ * configured with JUnit configuration parameters.
+ * <p>
+ * With the {@link SystemSafeParallelExecutionConfigurationStrategy}, each test context runs on JUnit's fork-join
+ * workers with a clean context, rather than on top of whatever the worker inherited when it was spawned.
  *
  * @author Harry Dent
  * @since 1.0
@@ -28,85 +46,463 @@ public class SystemSafeExtension implements BeforeAllCallback,
 
 
     /**
-     * The key to store properties under in the {@code ExtensionContext} store.
+     * The key to store a test class's {@link PropertiesNode} under in the {@code ExtensionContext} store. The node is
+     * stored rather than its properties, because the properties it holds are replaced when they are first written to.
      *
      * @see ExtensionContext#getStore(Namespace)
      */
     private static final String PROPERTIES_KEY = "properties";
 
     /**
-     * The original JVM System Properties instance.
+     * The key to store a test class's environment {@link PropertiesNode} under in the {@code ExtensionContext} store.
+     *
+     * @see SystemSafe#getenv(String)
+     */
+    private static final String ENVIRONMENT_KEY = "environment";
+
+    /**
+     * The key to store a test class's default locale and time zone {@link PropertiesNode} under in the
+     * {@code ExtensionContext} store.
+     *
+     * @see SystemSafe#setLocale(java.util.Locale)
+     */
+    private static final String DEFAULTS_KEY = "defaults";
+
+    /**
+     * The key to store the {@link AccessProfile} of a test context under, while a {@link PropertiesProfiler} is
+     * recording.
+     */
+    private static final String PROFILE_KEY = "profile";
+
+    /**
+     * The key to store the properties node that a test method's thread had before it, when the test method reads its
+     * class's properties directly.
+     *
+     * @see PropertiesProfiler#isReadOnly(ExtensionContext)
+     */
+    private static final String PREVIOUS_KEY = "previous";
+
+    /**
+     * The key to store the action that reverts a test context's changes to System Properties under, when tests are not
+     * executed concurrently.
+     *
+     * @see #startUndoLog(ExtensionContext, Declarations)
+     */
+    private static final String UNDO_KEY = "undo";
+
+    /**
+     * The key to store the token that a test class's context checks the files named by
+     * {@link SystemPropertiesSource} annotations with under, so that its test methods do not check them again.
+     *
+     * @see SystemPropertyOverlays#of(java.lang.reflect.AnnotatedElement, Object)
+     */
+    private static final String SOURCES_KEY = "sources";
+
+    /**
+     * The key to store the context that a fork-join worker had before a test context started on it under, when the
+     * test context runs with a clean one.
+     *
+     * @see SystemSafeParallelExecutionConfigurationStrategy
+     */
+    private static final String WORKER_KEY = "worker";
+
+    /**
+     * The configuration parameter that sets the most bytes captured from each of {@code System.out} and
+     * {@code System.err} per test context, {@value #DEFAULT_OUTPUT_LIMIT} by default.
+     *
+     * @see SystemSafe#getCapturedOut()
+     */
+    static final String OUTPUT_LIMIT_PARAMETER = "systemsafe.output.limit";
+    static final int DEFAULT_OUTPUT_LIMIT = 1024 * 1024;
+
+    /**
+     * The JUnit configuration parameter that enables parallel test execution.
+     */
+    private static final String PARALLEL_PARAMETER = "junit.jupiter.execution.parallel.enabled";
+
+    /**
+     * The JUnit configuration parameters that select the strategy that JUnit's fork-join pool is configured with.
+     *
+     * @see SystemSafeParallelExecutionConfigurationStrategy
+     */
+    private static final String STRATEGY_PARAMETER = "junit.jupiter.execution.parallel.config.strategy";
+    private static final String CUSTOM_STRATEGY_PARAMETER = "junit.jupiter.execution.parallel.config.custom.class";
+
+    /**
+     * A frozen copy of the original JVM System Properties, shared as the base of every properties tree.
      */
-    private static final Properties INITIAL_SYSTEM_PROPERTIES;
+    private static final FrozenProperties INITIAL_SYSTEM_PROPERTIES;
+
+    /**
+     * The System Properties seen by threads that are not in a test context. Changes made to these are shared among all
+     * such threads, just like changes made to the original JVM System Properties would be.
+     */
+    private static final PropertiesLayer SHARED_SYSTEM_PROPERTIES;
 
     static {
-        INITIAL_SYSTEM_PROPERTIES = System.getProperties();
+        INITIAL_SYSTEM_PROPERTIES = FrozenProperties.copyOf(System.getProperties());
+        SHARED_SYSTEM_PROPERTIES = PropertiesLayer.over(INITIAL_SYSTEM_PROPERTIES);
+        initializeEvents();
         System.setProperties(new PropertiesAdapter());
+        SystemOutput.install();
+    }
+
+    /**
+     * Initializes the JFR event classes before the {@link PropertiesAdapter} is installed. JFR reads System Properties
+     * while it registers an event class, which would otherwise happen on the first property access, possibly while the
+     * JDK is still initializing one of its own classes.
+     */
+    private static void initializeEvents() {
+        new LifecycleEvent();
+        new PropertiesLayerEvent();
+        new PropertyAccessEvent();
+        new TreeWalkEvent();
     }
 
     /**
-     * Gets the saved initial JVM System Properties. These are still mutable and shared among all threads, so beware.
+     * Gets the saved initial JVM System Properties. These are immutable.
      *
-     * @return an {@link Properties} instance of the System Properties that were present when this Extension was first
-     * referenced.
+     * @return a {@link FrozenProperties} instance of the System Properties that were present when this Extension was
+     * first referenced.
      */
-    static Properties getInitialSystemProperties() {
+    static FrozenProperties getInitialSystemProperties() {
         return INITIAL_SYSTEM_PROPERTIES;
     }
 
     /**
-     * Gets a copy of the saved initial JVM System Properties.
+     * Gets the System Properties for threads that are not in a test context. These are mutable and shared among all
+     * such threads, so beware.
      *
-     * @return a freshly copied {@link Properties} instance.
+     * @return a {@link PropertiesLayer} on top of the initial System Properties.
      */
-    static Properties cloneInitialSystemProperties() {
-        return (Properties) INITIAL_SYSTEM_PROPERTIES.clone();
+    static Properties getSharedSystemProperties() {
+        return SHARED_SYSTEM_PROPERTIES;
     }
 
     /**
      * {@inheritDoc}
-     * Adds a copy of the initial System Properties to the test context and the {@link PropertiesAdapter}.
+     * Adds a snapshot of the shared System Properties to the {@link PropertiesAdapter}, and a snapshot of the shared
+     * environment to the {@link SystemEnvironment}, then stores the resulting nodes in the test context, along with
+     * that of the {@link SystemDefaults}. Nothing is copied until either is first written to. Output written during
+     * the rest of the class setup is captured separately from that of each test.
+     * <p>
+     * A {@code @Nested} test class gets a snapshot of the properties and environment of its enclosing test class
+     * instead, whether tests are executed concurrently or not. Otherwise, when tests are not executed concurrently, the
+     * snapshot is of the current thread's properties, so that a test engine launched from within a test sees that
+     * test's properties. The test methods then write to the test class's layer through undo logs, which never touch
+     * the properties shared by threads outside any test.
+     * <p>
+     * Any {@link SystemPropertiesSource}, {@link SystemProperty} or {@link ClearSystemProperty} annotations of the
+     * test class are applied on top of the snapshot, as layers that are shared with every other run of the same class.
      */
     @Override
     public void beforeAll(final ExtensionContext context) {
-        var clonedProperties = cloneInitialSystemProperties();
+        var event = LifecycleEvent.begin("beforeAll", context);
+        var start = OverheadReport.startSetUp(context);
+        try {
+            startOnCleanWorker(context);
+            var store = context.getStore(NAMESPACE);
+            var enclosingNode = store.get(PROPERTIES_KEY, PropertiesNode.class);
+            var enclosingEnvironmentNode = store.get(ENVIRONMENT_KEY, PropertiesNode.class);
+            var enclosingDefaultsNode = store.get(DEFAULTS_KEY, PropertiesNode.class);
+
+            var environmentNode = SystemEnvironment.addEnvironment(PropertiesLayer.snapshotOf(
+                    enclosingEnvironmentNode != null
+                            ? enclosingEnvironmentNode.getProperties()
+                            : SystemEnvironment.getSharedEnvironment()));
+            var defaultsNode = SystemDefaults.addDefaults(PropertiesLayer.snapshotOf(
+                    enclosingDefaultsNode != null
+                            ? enclosingDefaultsNode.getProperties()
+                            : SystemDefaults.getSharedDefaults()));
+            SystemOutput.addCapture(outputLimit(context));
 
-        context.getStore(NAMESPACE).put(PROPERTIES_KEY, clonedProperties);
-        PropertiesAdapter.addProperties(clonedProperties);
+            store.put(ENVIRONMENT_KEY, environmentNode);
+            store.put(DEFAULTS_KEY, defaultsNode);
+            store.put(SOURCES_KEY, new Object());
+            var node = addProperties(enclosingNode != null
+                    ? enclosingNode.getProperties()
+                    : getOutermostProperties(context), Declarations.of(context));
+            store.put(PROPERTIES_KEY, node);
+            startProfile(node, context);
+        } finally {
+            event.commit();
+            OverheadReport.finishSetUp(context, start);
+        }
     }
 
     /**
      * {@inheritDoc}
-     * Copies the properties provided by the outer test context and add them back to the test context. Also adds them
-     * to the {@link PropertiesAdapter}.
+     * Adds a snapshot of the properties provided by the outer test context to the {@link PropertiesAdapter}, and a
+     * snapshot of its environment to the {@link SystemEnvironment}. Nothing is copied until either is first written
+     * to, so tests that never change System Properties or environment variables cost next to nothing. The
+     * {@link SystemDefaults} are snapshot in the same way. Also starts capturing the test's output.
+     * <p>
+     * Any {@link SystemPropertiesSource}, {@link SystemProperty} or {@link ClearSystemProperty} annotations of the
+     * test method are applied in the same way as those of the test class.
      */
     @Override
     public void beforeEach(final ExtensionContext context) {
-        var store = context.getStore(NAMESPACE);
-        var parentProperties = store.get(PROPERTIES_KEY, Properties.class);
-        var clonedProperties = (Properties) parentProperties.clone();
+        var event = LifecycleEvent.begin("beforeEach", context);
+        var start = OverheadReport.startSetUp(context);
+        try {
+            startOnCleanWorker(context);
+            var store = context.getStore(NAMESPACE);
+            var parentNode = store.get(PROPERTIES_KEY, PropertiesNode.class);
+            var parentEnvironmentNode = store.get(ENVIRONMENT_KEY, PropertiesNode.class);
+            var parentDefaultsNode = store.get(DEFAULTS_KEY, PropertiesNode.class);
 
-        store.put(PROPERTIES_KEY, clonedProperties);
-        PropertiesAdapter.addProperties(clonedProperties);
+            SystemEnvironment.addEnvironment(PropertiesLayer.snapshotOf(parentEnvironmentNode.getProperties()));
+            SystemDefaults.addDefaults(PropertiesLayer.snapshotOf(parentDefaultsNode.getProperties()));
+            SystemOutput.addCapture(outputLimit(context));
+            var declarations = Declarations.of(context);
+            if (PropertiesProfiler.of(context).isReadOnly(context) && declarations.isEmpty()) {
+                store.put(PREVIOUS_KEY, PropertiesAdapter.swapProperties(PropertiesNode.readOnlyOver(parentNode)));
+            } else if (!startUndoLog(context, declarations)) {
+                startProfile(addProperties(parentNode.getProperties(), declarations), context);
+            }
+        } finally {
+            event.commit();
+            OverheadReport.finishSetUp(context, start);
+        }
     }
 
     /**
      * {@inheritDoc}
-     * Removes the current head properties of the test context and the {@link PropertiesAdapter}.
+     * Removes the current head properties of the {@link PropertiesAdapter}, the {@link SystemEnvironment} and the
+     * {@link SystemDefaults}, and releases the test's captured output.
      */
     @Override
     public void afterEach(final ExtensionContext context) {
-        context.getStore(NAMESPACE).remove(PROPERTIES_KEY);
-        PropertiesAdapter.removeProperties();
+        var event = LifecycleEvent.begin("afterEach", context);
+        var start = OverheadReport.startTearDown(context);
+        try {
+            var store = context.getStore(NAMESPACE);
+            var previousNode = store.remove(PREVIOUS_KEY, PropertiesNode.class);
+            if (previousNode != null) {
+                PropertiesAdapter.swapProperties(previousNode).release();
+            } else {
+                removeProperties(context);
+            }
+            SystemEnvironment.removeEnvironment();
+            SystemDefaults.removeDefaults();
+            SystemOutput.removeCapture();
+            finishProfile(context);
+            finishOnCleanWorker(context);
+        } finally {
+            event.commit();
+            OverheadReport.finishTearDown(context, start);
+        }
     }
 
     /**
      * {@inheritDoc}
-     * Removes the current head properties of the test context and the {@link PropertiesAdapter}.
+     * Removes the current head properties of the test context, the {@link PropertiesAdapter}, the
+     * {@link SystemEnvironment} and the {@link SystemDefaults}, and releases the output captured during class setup.
      */
     @Override
     public void afterAll(final ExtensionContext context) {
-        context.getStore(NAMESPACE).remove(PROPERTIES_KEY);
-        PropertiesAdapter.removeProperties();
+        var event = LifecycleEvent.begin("afterAll", context);
+        var start = OverheadReport.startTearDown(context);
+        try {
+            var store = context.getStore(NAMESPACE);
+            store.remove(PROPERTIES_KEY);
+            store.remove(ENVIRONMENT_KEY);
+            store.remove(DEFAULTS_KEY);
+            removeProperties(context);
+            SystemEnvironment.removeEnvironment();
+            SystemDefaults.removeDefaults();
+            SystemOutput.removeCapture();
+            finishProfile(context);
+            finishOnCleanWorker(context);
+        } finally {
+            event.commit();
+            OverheadReport.finishTearDown(context, start);
+        }
+    }
+
+    /**
+     * Starts an undo log of the current thread's System Properties, rather than adding a new layer for them, if tests
+     * are not executed concurrently. Only one test runs at a time then, so the test can write to the properties of its
+     * test class directly, and the properties can be reverted afterwards to a snapshot taken now. Threads that the
+     * test spawns still get a snapshot of their own, as usual.
+     * <p>
+     * Test classes always get a layer of their own, so an undo log is never started for the System Properties shared
+     * by threads outside any test, which those threads could write to at the same time. Nor is one started for a test
+     * method that declares System Properties with annotations, since writing them to the test class's properties
+     * would copy every one of them, including whole {@link SystemPropertiesSource} files, for every test. The test
+     * gets a frozen layer that shares the precomputed declarations instead.
+     *
+     * @return {@code true} if an undo log was started, or {@code false} if a layer should be added instead.
+     * @see #usesUndoLogs(ExtensionContext)
+     */
+    private static boolean startUndoLog(final ExtensionContext context, final Declarations declarations) {
+        if (!usesUndoLogs(context) || !declarations.isEmpty()) return false;
+
+        var properties = PropertiesAdapter.getNode().getWritableProperties();
+        if (properties == SHARED_SYSTEM_PROPERTIES || !(properties instanceof PropertiesLayer)) return false;
+
+        var layer = (PropertiesLayer) properties;
+        var snapshot = layer.snapshot();
+        context.getStore(NAMESPACE).put(UNDO_KEY, (Runnable) () -> layer.revert(snapshot));
+        return true;
+    }
+
+    /**
+     * Installs a clean context on the current thread for the duration of a test context, if it is one of JUnit's
+     * fork-join workers and the {@link SystemSafeParallelExecutionConfigurationStrategy} is in use. The worker may have
+     * inherited the context of the test it was spawned by, or be part way through another test context that it has
+     * stolen this one from, so its own context is stored, and installed again once the test context ends. Not used
+     * when tests are not executed concurrently, since undo logs write to the current thread's properties directly.
+     * <p>
+     * Whether the strategy is in use is read from the configuration of the test run that the context belongs to, so
+     * other runs in the same JVM, such as those launched with the {@code EngineTestKit}, are not affected by it.
+     */
+    private static void startOnCleanWorker(final ExtensionContext context) {
+        if (WorkerThreads.isForkJoinWorker() && isConcurrent(context) && cleansWorkers(context)) {
+            context.getStore(NAMESPACE).put(WORKER_KEY, CapturedContext.clean().install());
+        }
+    }
+
+    private static void finishOnCleanWorker(final ExtensionContext context) {
+        var previous = context.getStore(NAMESPACE).remove(WORKER_KEY, CapturedContext.class);
+        if (previous != null) previous.install();
+    }
+
+    /**
+     * Gets the properties that a test class which is not nested in another takes a snapshot of: those of the current
+     * thread when tests are not executed concurrently, or otherwise those shared by threads outside any test.
+     */
+    private static Properties getOutermostProperties(final ExtensionContext context) {
+        return usesUndoLogs(context) ? PropertiesAdapter.getNode().getProperties() : SHARED_SYSTEM_PROPERTIES;
+    }
+
+    /**
+     * Checks whether test methods write to the properties of their test class, and are reverted by undo logs, rather
+     * than getting layers of their own. Not the case while a {@link PropertiesProfiler} is active, since profiles are
+     * recorded and replayed through layers.
+     */
+    private static boolean usesUndoLogs(final ExtensionContext context) {
+        return !isConcurrent(context) && !PropertiesProfiler.of(context).isActive();
+    }
+
+    private static boolean cleansWorkers(final ExtensionContext context) {
+        return context.getConfigurationParameter(STRATEGY_PARAMETER)
+                .filter(value -> value.trim().equalsIgnoreCase("custom"))
+                .flatMap(value -> context.getConfigurationParameter(CUSTOM_STRATEGY_PARAMETER))
+                .filter(value -> value.trim().equals(SystemSafeParallelExecutionConfigurationStrategy.class.getName()))
+                .isPresent();
+    }
+
+    private static int outputLimit(final ExtensionContext context) {
+        return context.getConfigurationParameter(OUTPUT_LIMIT_PARAMETER)
+                .map(SystemSafeExtension::parseOutputLimit)
+                .orElse(DEFAULT_OUTPUT_LIMIT);
+    }
+
+    private static int parseOutputLimit(final String limit) {
+        var message = format("Invalid %s '%s', expected a number of bytes", OUTPUT_LIMIT_PARAMETER, limit);
+        int bytes;
+        try {
+            bytes = Integer.parseInt(limit.trim());
+        } catch (NumberFormatException e) {
+            throw new ExtensionConfigurationException(message, e);
+        }
+        if (bytes < 0) throw new ExtensionConfigurationException(message);
+        return bytes;
+    }
+
+    private static boolean isConcurrent(final ExtensionContext context) {
+        return context.getConfigurationParameter(PARALLEL_PARAMETER)
+                .map(value -> Boolean.parseBoolean(value.trim()))
+                .orElse(false);
+    }
+
+    /**
+     * Reverts the changes logged by {@link #startUndoLog(ExtensionContext, Declarations)}, or otherwise releases the
+     * layer added for the test context, along with the threads and tasks that inherited from it.
+     */
+    private static void removeProperties(final ExtensionContext context) {
+        var undo = context.getStore(NAMESPACE).remove(UNDO_KEY, Runnable.class);
+        if (undo != null) {
+            undo.run();
+        } else {
+            PropertiesAdapter.releaseProperties();
+        }
+    }
+
+    /**
+     * Starts recording which System Properties a test context accesses through the supplied node, if a
+     * {@link PropertiesProfiler} is recording.
+     */
+    private static void startProfile(final PropertiesNode node, final ExtensionContext context) {
+        var profile = PropertiesProfiler.of(context).start(context);
+        node.setProfile(profile);
+        if (profile != null) context.getStore(NAMESPACE).put(PROFILE_KEY, profile);
+    }
+
+    private static void finishProfile(final ExtensionContext context) {
+        var profile = context.getStore(NAMESPACE).remove(PROFILE_KEY, AccessProfile.class);
+        if (profile != null) PropertiesProfiler.of(context).finish(profile);
+    }
+
+    /**
+     * Adds a snapshot of the supplied properties to the {@link PropertiesAdapter}, with the declarations of the test
+     * context applied on top. The after callbacks run even if this fails, so a plain snapshot is added before an
+     * invalid declaration is reported, and the callbacks still remove the node that was added here.
+     */
+    private static PropertiesNode addProperties(final Properties properties, final Declarations declarations) {
+        List<Map<Object, Object>> overlays;
+        try {
+            overlays = declarations.getOverlays();
+        } catch (ExtensionConfigurationException e) {
+            PropertiesAdapter.addProperties(PropertiesLayer.snapshotOf(properties));
+            throw e;
+        }
+
+        var layer = PropertiesLayer.snapshotOf(properties);
+        for (var overlay : overlays) {
+            layer = PropertiesLayer.frozenOver(layer, overlay);
+        }
+        return PropertiesAdapter.addProperties(layer);
+    }
+
+    /**
+     * The System Properties that a test context declares with annotations or property files, resolved once per
+     * callback. The files are only checked for changes once per test class context, whose token is shared with its
+     * test methods through the store. Declarations that cannot be resolved are only reported once the test context's
+     * properties are added.
+     */
+    private static final class Declarations {
+
+        private final List<Map<Object, Object>> overlays;
+        private final ExtensionConfigurationException invalid;
+
+        private Declarations(final List<Map<Object, Object>> overlays, final ExtensionConfigurationException invalid) {
+            this.overlays = overlays;
+            this.invalid = invalid;
+        }
+
+        private static Declarations of(final ExtensionContext context) {
+            var check = context.getStore(NAMESPACE).get(SOURCES_KEY);
+            try {
+                return new Declarations(context.getElement()
+                        .map(element -> SystemPropertyOverlays.of(element, check))
+                        .orElse(emptyList()), null);
+            } catch (ExtensionConfigurationException e) {
+                return new Declarations(emptyList(), e);
+            }
+        }
+
+        /**
+         * @return {@code true} if the test context declares no System Properties of its own, and none invalidly.
+         */
+        private boolean isEmpty() {
+            return invalid == null && overlays.isEmpty();
+        }
+
+        private List<Map<Object, Object>> getOverlays() {
+            if (invalid != null) throw invalid;
+            return overlays;
+        }
     }
 }
@@ -0,0 +1,44 @@
+package com.github.hellproxy;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import static java.util.concurrent.ForkJoinPool.defaultForkJoinWorkerThreadFactory;
+
+/**
+ * A {@link ForkJoinWorkerThreadFactory} whose workers start with clean System Properties, rather than with those of
+ * whichever thread happened to spawn them. Without it, a worker of a shared pool that is first spawned during a test
+ * sees that test's properties, and the console output of other tests' tasks is captured by it, until the test ends.
+ * <p>
+ * Workers fall back to the properties shared by threads outside of any test context. They inherit nothing at all from
+ * the thread that spawns them, which also saves creating a node for them in that thread's properties tree. Tasks that
+ * should see a test's properties still have to be wrapped, for example with
+ * {@link SystemSafe#supplyAsync(java.util.function.Supplier)}.
+ * To use the factory for {@link ForkJoinPool#commonPool()}, which also runs parallel streams and the async stages of
+ * {@link java.util.concurrent.CompletableFuture}, set the System Property
+ * <pre>{@code
+ * -Djava.util.concurrent.ForkJoinPool.common.threadFactory=com.github.hellproxy.SystemSafeForkJoinWorkerThreadFactory
+ * }</pre>
+ *
+ * @author Harry Dent
+ * @see SystemSafe#supplyAsync(java.util.function.Supplier)
+ * @see SystemSafeParallelExecutionConfigurationStrategy
+ * @since 1.1
+ */
+public class SystemSafeForkJoinWorkerThreadFactory implements ForkJoinWorkerThreadFactory {
+
+    /**
+     * Creates a factory. Public, so that the common pool can load it by name.
+     */
+    public SystemSafeForkJoinWorkerThreadFactory() {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+        return WorkerThreads.createClean(() -> defaultForkJoinWorkerThreadFactory.newThread(pool));
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.hellproxy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link CompletableFuture} whose async stages run with the System Properties of the thread that triggers them, which
+ * is the thread that completed the previous stage, or the thread that adds a stage to an already completed future. Each
+ * task handed to the default executor is wrapped with {@link SystemSafe#wrap(Runnable)}, so a chain of async stages
+ * started by a test keeps the test's properties on whichever pooled threads it runs. Every dependent stage is another
+ * {@code SystemSafeFuture}, with the same executor.
+ * <p>
+ * Stages given an executor of their own are handed to it as they are. That executor should be wrapped with
+ * {@link SystemSafe#wrap(java.util.concurrent.ExecutorService)} too.
+ *
+ * @param <T> the result type of the future.
+ * @author Harry Dent
+ * @see SystemSafe#supplyAsync(java.util.function.Supplier)
+ * @since 1.1
+ */
+final class SystemSafeFuture<T> extends CompletableFuture<T> {
+
+    /**
+     * The executor of a plain {@code CompletableFuture}'s async stages, which is usually the common pool.
+     */
+    static final Executor ASYNC_POOL = new CompletableFuture<>().defaultExecutor();
+
+    private final Executor executor;
+
+    /**
+     * Creates an incomplete future.
+     *
+     * @param executor the executor to hand wrapped async tasks to.
+     */
+    SystemSafeFuture(final Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <U> CompletableFuture<U> newIncompleteFuture() {
+        return new SystemSafeFuture<>(executor);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Wraps each task with the System Properties of the thread that submits it.
+     */
+    @Override
+    public Executor defaultExecutor() {
+        return this::execute;
+    }
+
+    private void execute(final Runnable task) {
+        executor.execute(SystemSafe.wrap(task));
+    }
+}
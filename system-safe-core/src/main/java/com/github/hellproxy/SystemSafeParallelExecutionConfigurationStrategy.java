@@ -0,0 +1,123 @@
+package com.github.hellproxy;
+
+import org.junit.platform.engine.ConfigurationParameters;
+import org.junit.platform.engine.support.hierarchical.ParallelExecutionConfiguration;
+import org.junit.platform.engine.support.hierarchical.ParallelExecutionConfigurationStrategy;
+
+import static java.lang.String.format;
+
+/**
+ * {@code SystemSafeParallelExecutionConfigurationStrategy} configures JUnit's fork-join pool for parallel test
+ * execution, and makes each test context run on its worker with clean System Properties, environment and output
+ * capture.
+ * <p>
+ * JUnit's pool spawns workers as it needs them, including compensating workers while a test blocks, usually from a
+ * worker that is running a test at the time. Such a worker inherits that test's properties and output capture, and
+ * anything that runs on it outside of a SystemSafe test context, such as other extensions' callbacks, sees them until
+ * the test ends. With this strategy, each test context swaps a clean context in on the worker it runs on, as if the
+ * worker had been spawned outside of any test context, and swaps the worker's own context back once it ends. Configure
+ * it in {@code junit-platform.properties}:
+ * <pre>{@code
+ * junit.jupiter.execution.parallel.config.strategy=custom
+ * junit.jupiter.execution.parallel.config.custom.class=\
+ *     com.github.hellproxy.SystemSafeParallelExecutionConfigurationStrategy
+ * }</pre>
+ * The pool is sized from the number of available processors, multiplied by the
+ * {@code junit.jupiter.execution.parallel.config.dynamic.factor} parameter, just like JUnit's own {@code dynamic}
+ * strategy, and its core threads are kept alive for the whole run.
+ *
+ * @author Harry Dent
+ * @see SystemSafeForkJoinWorkerThreadFactory
+ * @since 1.1
+ */
+public class SystemSafeParallelExecutionConfigurationStrategy implements ParallelExecutionConfigurationStrategy {
+
+    /**
+     * The configuration parameter, relative to JUnit's {@code junit.jupiter.execution.parallel.config.} prefix, that
+     * the number of available processors is multiplied by.
+     */
+    static final String FACTOR_PARAMETER = "dynamic.factor";
+
+    /**
+     * How many more workers than its parallelism the pool may spawn, to compensate for blocked workers. The same as
+     * for JUnit's own strategies.
+     */
+    private static final int MAX_COMPENSATING_WORKERS = 256;
+
+    /**
+     * How long idle workers beyond the core pool size are kept alive for, in seconds.
+     */
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Creates a strategy. Public, so that JUnit can load it by name.
+     */
+    public SystemSafeParallelExecutionConfigurationStrategy() {
+    }
+
+    /**
+     * {@inheritDoc}
+     * The {@link SystemSafeExtension} starts each test context of a run configured with this strategy with a clean
+     * context, by checking the run's own configuration parameters, so nothing is changed here for other runs in the
+     * same JVM.
+     *
+     * @throws IllegalArgumentException if the factor is not a positive number.
+     */
+    @Override
+    public ParallelExecutionConfiguration createConfiguration(final ConfigurationParameters configurationParameters) {
+        var factor = configurationParameters.get(FACTOR_PARAMETER)
+                .map(value -> parseFactor(value.trim()))
+                .orElse(1.0);
+        var parallelism = Math.max(1, (int) (factor * Runtime.getRuntime().availableProcessors()));
+        return new Configuration(parallelism);
+    }
+
+    private static double parseFactor(final String value) {
+        try {
+            var factor = Double.parseDouble(value);
+            if (factor > 0) return factor;
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new IllegalArgumentException(format("'%s' must be a positive number, but was '%s'",
+                FACTOR_PARAMETER, value));
+    }
+
+    /**
+     * A pool of {@code parallelism} core workers, which may spawn up to {@value #MAX_COMPENSATING_WORKERS} more to
+     * compensate for blocked ones.
+     */
+    private static final class Configuration implements ParallelExecutionConfiguration {
+
+        private final int parallelism;
+
+        private Configuration(final int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        @Override
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        @Override
+        public int getMinimumRunnable() {
+            return parallelism;
+        }
+
+        @Override
+        public int getMaxPoolSize() {
+            return parallelism + MAX_COMPENSATING_WORKERS;
+        }
+
+        @Override
+        public int getCorePoolSize() {
+            return parallelism;
+        }
+
+        @Override
+        public int getKeepAliveSeconds() {
+            return KEEP_ALIVE_SECONDS;
+        }
+    }
+}
@@ -11,6 +11,27 @@ import java.util.Properties;
  */
 public class ThreadLocalProperties extends InheritableThreadLocal<PropertiesNode> {
 
+    private final Properties root;
+
+    /**
+     * Creates a thread-local whose properties trees fall back to the System Properties shared by threads outside of any
+     * test context.
+     */
+    public ThreadLocalProperties() {
+        this(null);
+    }
+
+    /**
+     * Creates a thread-local whose properties trees all fall back to the supplied properties, once every node up to
+     * the root of a tree has been removed.
+     *
+     * @param root the properties that every thread's properties tree falls back to, or {@code null} to fall back to the
+     *             System Properties shared by threads outside of any test context.
+     */
+    public ThreadLocalProperties(final Properties root) {
+        this.root = root;
+    }
+
     /**
      * Supplies a new, clean properties node. The result of this call is supplied to each new thread, when this object's
      * {@link ThreadLocalProperties#get()} method is first called.
@@ -19,19 +40,34 @@ public class ThreadLocalProperties extends InheritableThreadLocal<PropertiesNode
      */
     @Override
     protected PropertiesNode initialValue() {
-        return new PropertiesNode();
+        return new PropertiesNode(null, null, getRoot());
     }
 
     /**
-     * Deep clones the parent's properties. This is to prevent changes made to the properties by child threads leaking
-     * out to the parent thread.
+     * Shares a snapshot of the parent's properties, which a new layer is put on top of when the child first writes to
+     * them. This is to prevent changes made to the properties by child threads leaking out to the parent thread, and
+     * vice versa, without copying anything when a thread is spawned.
+     * <p>
+     * Pool workers that are meant to start clean get a new, clean properties node instead, as if they had been spawned
+     * outside of any test context.
      *
      * @param parentValue instance from the parent thread.
-     * @return a new {@link PropertiesNode} with that refers to {@code parentValue} as its parent.
+     * @return a new {@link PropertiesNode} with that refers to {@code parentValue} as its parent, or a clean one.
+     * @see SystemSafeForkJoinWorkerThreadFactory
      */
     @Override
     protected PropertiesNode childValue(final PropertiesNode parentValue) {
-        return new PropertiesNode(parentValue);
+        return WorkerThreads.isCreatingClean() ? initialValue() : new PropertiesNode(parentValue);
+    }
+
+    /**
+     * Creates a node for a task that is going to run on a different thread, as if that thread had been spawned by the
+     * current thread.
+     *
+     * @return a new {@link PropertiesNode} that refers to the current thread's node as its parent.
+     */
+    public PropertiesNode inherit() {
+        return childValue(get());
     }
 
     /**
@@ -43,20 +79,78 @@ public class ThreadLocalProperties extends InheritableThreadLocal<PropertiesNode
         return get().getProperties();
     }
 
+    /**
+     * Gets the properties that are at the head of the current thread's properties tree, in a form that can be written
+     * to.
+     *
+     * @return a writable {@link Properties} instance local to the current thread.
+     * @see PropertiesNode#getWritableProperties()
+     */
+    public Properties getWritableProperties() {
+        return get().getWritableProperties();
+    }
+
     /**
      * Sets the supplied properties as the new head of the current thread's properties tree.
      *
      * @param properties the properties to be added to the properties tree.
+     * @return the new head of the current thread's properties tree.
      */
-    public void addProperties(final Properties properties) {
+    public PropertiesNode addProperties(final Properties properties) {
         var head = get().getHead();
-        set(new PropertiesNode(head, properties));
+        var node = new PropertiesNode(head, properties, getRoot());
+        set(node);
+        return node;
     }
 
     /**
-     * Removes the head of the current thread's properties tree.
+     * Removes the head of the current thread's properties tree. The current thread then refers to the next node up the
+     * tree, so that it does not hold on to the removed node.
      */
     public void removeProperties() {
-        get().remove();
+        var head = get().getHead();
+        if (head == null) return;
+
+        head.remove();
+        var newHead = head.getHead();
+        set(newHead != null ? newHead : head);
+    }
+
+    /**
+     * Releases the head of the current thread's properties tree at the end of a test context, along with the nodes of
+     * the threads and tasks that inherited from it. The current thread then refers to the next node up the tree.
+     *
+     * @see PropertiesNode#release()
+     */
+    public void releaseProperties() {
+        var head = get().getHead();
+        if (head == null) return;
+
+        head.release();
+        var newHead = head.getHead();
+        set(newHead != null ? newHead : head);
+    }
+
+    /**
+     * Removes a specific node from the current thread's properties tree. If the current thread refers to that node, it
+     * then refers to the next node up the tree instead. Otherwise, the node is simply skipped from then on.
+     *
+     * @param node the node to remove.
+     */
+    public void removeProperties(final PropertiesNode node) {
+        node.remove();
+        if (get() != node) return;
+
+        var newHead = node.getHead();
+        set(newHead != null ? newHead : node);
+    }
+
+    /**
+     * Gets the properties that every properties tree of this thread-local falls back to. The System Properties shared
+     * by threads outside of any test context are only looked up once a tree is created, since they are set up while
+     * this class is first used.
+     */
+    private Properties getRoot() {
+        return root != null ? root : SystemSafeExtension.getSharedSystemProperties();
     }
 }
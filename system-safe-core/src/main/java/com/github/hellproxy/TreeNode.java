@@ -0,0 +1,92 @@
+package com.github.hellproxy;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A node of a thread-local tree, whose removed nodes are skipped over when looking for the nearest node that has not
+ * been removed.
+ * <p>
+ * Removed nodes may be shared by many threads, each of which may be looking for the same head at once. A link is only
+ * ever re-pointed from the parent that was seen while walking up the tree, to the head that the walk found. Every link
+ * therefore always points to an ancestor of the node it belongs to, however the walks of different threads interleave,
+ * so no walk can pass its own head, and no link can ever form a cycle.
+ *
+ * @param <N> the type of the nodes in the tree.
+ * @author Harry Dent
+ * @see PropertiesNode
+ * @see OutputNode
+ * @since 1.1
+ */
+abstract class TreeNode<N extends TreeNode<N>> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<TreeNode, TreeNode> PARENT =
+            AtomicReferenceFieldUpdater.newUpdater(TreeNode.class, TreeNode.class, "parent");
+
+    private static final int MIN_WALK_LENGTH = 4;
+
+    private volatile N parent;
+
+    /**
+     * @param parent the parent of this node, or {@code null} for the root of a tree.
+     */
+    TreeNode(final N parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Checks whether this node has been removed from the tree. A removed node must stay removed.
+     *
+     * @return {@code true} if this node should be skipped over.
+     */
+    abstract boolean isRemoved();
+
+    /**
+     * Called with the number of removed nodes that were walked past to find a head, if there were any.
+     *
+     * @param removed the number of removed nodes.
+     */
+    void walkedPast(final int removed) {
+    }
+
+    /**
+     * Gets the parent of this node, as currently linked.
+     *
+     * @return the parent node, or {@code null} for the root of a tree.
+     */
+    final N getParent() {
+        return parent;
+    }
+
+    /**
+     * Gets the first node that has not been removed, starting with this node and traversing up through its ancestors.
+     * Every removed node that is passed on the way is linked directly to the node that is found, unless another thread
+     * has re-linked it in the meantime, so that later calls do not have to traverse them again.
+     *
+     * @return the head of the tree, as seen from this node, or {@code null} if every node up to the root is removed.
+     */
+    @SuppressWarnings("unchecked")
+    final N findHead() {
+        if (!isRemoved()) return (N) this;
+
+        var walked = new TreeNode<?>[MIN_WALK_LENGTH];
+        var seen = new TreeNode<?>[MIN_WALK_LENGTH];
+        var length = 0;
+        TreeNode<N> head = this;
+        while (head != null && head.isRemoved()) {
+            if (length == walked.length) {
+                walked = Arrays.copyOf(walked, length * 2);
+                seen = Arrays.copyOf(seen, length * 2);
+            }
+            walked[length] = head;
+            seen[length++] = head = head.parent;
+        }
+        walkedPast(length);
+
+        for (var i = 0; i < length; i++) {
+            if (seen[i] != head) PARENT.compareAndSet(walked[i], seen[i], head);
+        }
+        return (N) head;
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.hellproxy;
+
+import jdk.jfr.*;
+
+/**
+ * A JFR event recording how many removed nodes were walked past to find the head of a properties tree. Only committed
+ * when at least one removed node was passed, since the walk is free otherwise.
+ *
+ * @author Harry Dent
+ * @see PropertiesNode#getHead()
+ * @since 1.1
+ */
+@Name("com.github.hellproxy.TreeWalk")
+@Label("SystemSafe Tree Walk")
+@Category("SystemSafe")
+@Description("A walk up a properties tree, past removed nodes, to find its head")
+@Enabled(false)
+@StackTrace(false)
+final class TreeWalkEvent extends Event {
+
+    @Label("Depth")
+    @Description("The number of removed nodes walked past")
+    int depth;
+
+    /**
+     * Records a walk up a properties tree.
+     *
+     * @param depth the number of removed nodes walked past.
+     */
+    static void record(final int depth) {
+        var event = new TreeWalkEvent();
+        if (event.isEnabled()) {
+            event.depth = depth;
+            event.commit();
+        }
+    }
+}
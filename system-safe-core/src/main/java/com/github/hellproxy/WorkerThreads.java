@@ -0,0 +1,60 @@
+package com.github.hellproxy;
+
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Supplier;
+
+/**
+ * Keeps pool workers from holding on to the System Properties, environment and output capture of whichever test they
+ * happened to be spawned by. Pools only spawn workers as they need them, often from a thread that is running a test, so
+ * an inherited context is usually a stale one.
+ * <p>
+ * Threads constructed by {@link #createClean(Supplier)} inherit nothing at all. JUnit's own workers cannot be
+ * constructed that way, since its pool's thread factory cannot be replaced, so when the configuration of a test run
+ * selects the {@link SystemSafeParallelExecutionConfigurationStrategy}, the {@link SystemSafeExtension} runs each of
+ * its test contexts on a worker with a clean context instead.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+final class WorkerThreads {
+
+    private static final ThreadLocal<Boolean> CREATING = new ThreadLocal<>();
+
+    private WorkerThreads() {
+    }
+
+    /**
+     * Checks whether the current thread is a fork-join worker, which test contexts may have to start a clean context
+     * on.
+     *
+     * @return {@code true} if the current thread is a fork-join worker.
+     */
+    static boolean isForkJoinWorker() {
+        return Thread.currentThread() instanceof ForkJoinWorkerThread;
+    }
+
+    /**
+     * Constructs a thread that starts with a clean context.
+     *
+     * @param constructor constructs the thread on the current thread.
+     * @param <T>         the type of the thread.
+     * @return the constructed thread.
+     */
+    static <T extends Thread> T createClean(final Supplier<T> constructor) {
+        CREATING.set(Boolean.TRUE);
+        try {
+            return constructor.get();
+        } finally {
+            CREATING.remove();
+        }
+    }
+
+    /**
+     * Checks whether the thread that the current thread is constructing should start with a clean context.
+     *
+     * @return {@code true} if the thread being constructed should not inherit anything from the current thread.
+     */
+    static boolean isCreatingClean() {
+        return CREATING.get() != null;
+    }
+}
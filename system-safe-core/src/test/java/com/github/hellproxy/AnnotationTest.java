@@ -0,0 +1,74 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(SystemSafeExtension.class)
+@DisplayName("Test how System Properties are declared with annotations")
+@SystemProperty(key = "fruit", value = "apple")
+@SystemProperty(key = "vegetable", value = "carrot")
+@ClearSystemProperty(key = "java.vendor")
+class AnnotationTest {
+
+    @Test
+    @DisplayName("test that the annotations of the test class apply to every test")
+    void test_classAnnotations_apply() {
+        assertThat(System.getProperty("fruit")).isEqualTo("apple");
+        assertThat(System.getProperty("vegetable")).isEqualTo("carrot");
+        assertThat(System.getProperty("java.vendor")).isNull();
+        assertThat(System.getProperty("java.version")).isNotNull();
+    }
+
+    @RepeatedTest(10)
+    @DisplayName("test that the annotations of a test method override those of the test class")
+    @SystemProperty(key = "fruit", value = "banana")
+    @ClearSystemProperty(key = "vegetable")
+    void test_methodAnnotations_overrideClassAnnotations() {
+        assertThat(System.getProperty("fruit")).isEqualTo("banana");
+        assertThat(System.getProperty("vegetable")).isNull();
+
+        System.setProperty("fruit", "cherry");
+        System.setProperty("vegetable", "potato");
+
+        assertThat(System.getProperty("fruit")).isEqualTo("cherry");
+        assertThat(System.getProperty("vegetable")).isEqualTo("potato");
+    }
+
+    @Test
+    @DisplayName("test that each annotated method is only resolved once")
+    void test_overlays_areCached() throws NoSuchMethodException {
+        var method = AnnotationTest.class.getDeclaredMethod("test_methodAnnotations_overrideClassAnnotations");
+
+        assertThat(SystemPropertyOverlays.of(method)).isSameAs(SystemPropertyOverlays.of(method));
+    }
+
+    @Test
+    @DisplayName("test that methods without annotations have no overlays, even next to a method with invalid ones")
+    void test_unannotatedMethods_haveNoOverlays() throws NoSuchMethodException {
+        var method = AnnotationTest.class.getDeclaredMethod("test_classAnnotations_apply");
+
+        assertThat(SystemPropertyOverlays.of(method)).isEmpty();
+        assertThat(SystemPropertyOverlays.of(AnnotationTest.class)).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("test that a key cannot be declared more than once on the same element")
+    void test_duplicateKeys_areRejected() throws NoSuchMethodException {
+        var method = AnnotationTest.class.getDeclaredMethod("duplicateKeys");
+
+        assertThatThrownBy(() -> SystemPropertyOverlays.of(method))
+                .isInstanceOf(ExtensionConfigurationException.class)
+                .hasMessageContaining("fruit");
+    }
+
+    @SystemProperty(key = "fruit", value = "apple")
+    @ClearSystemProperty(key = "fruit")
+    private void duplicateKeys() {
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -38,6 +39,34 @@ class ChildThreadTest {
         assertThat(threadLookupRef).hasValue(value);
     }
 
+    @Test
+    @DisplayName("test that spawned child threads do not see changes their parent makes after spawning them")
+    void test_spawnedChildThreads_doNotSeeLaterParentChanges() throws InterruptedException {
+        var key = "key";
+        var value = "value";
+
+        System.setProperty(key, value);
+
+        var parentChanged = new CountDownLatch(1);
+        AtomicReference<String> threadLookupRef = new AtomicReference<>();
+        var childThread = new Thread(() -> {
+            try {
+                parentChanged.await(1, SECONDS);
+                threadLookupRef.set(System.getProperty(key));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        childThread.start();
+        System.setProperty(key, "changed");
+        parentChanged.countDown();
+        childThread.join(1000);
+
+        assertThat(threadLookupRef).hasValue(value);
+        assertThat(System.getProperty(key)).isEqualTo("changed");
+    }
+
     @Test
     @DisplayName("test that spawned child threads do not interact with each other's or their parent's properties")
     void test_spawnedChildThreads_doNotInteract() throws InterruptedException, ExecutionException {
@@ -72,4 +101,57 @@ class ChildThreadTest {
         assertThat(System.getProperty(key)).isEqualTo(value);
         assertThat(values).containsExactlyInAnyOrderElementsOf(expected);
     }
+
+    @Test
+    @DisplayName("test that iterating over the System Properties does not give a child thread a copy of its own")
+    void test_iteratingProperties_doesNotCopyThem() throws InterruptedException {
+        System.setProperty("key", "value");
+
+        AtomicReference<Properties> before = new AtomicReference<>();
+        AtomicReference<Properties> after = new AtomicReference<>();
+        var childThread = new Thread(() -> {
+            before.set(PropertiesAdapter.getNode().getProperties());
+            var keys = new ArrayList<>(System.getProperties().keySet());
+            var values = new ArrayList<>(System.getProperties().values());
+            var entries = new ArrayList<>(System.getProperties().entrySet());
+            assertThat(keys).contains("key");
+            assertThat(values).contains("value");
+            assertThat(entries).hasSameSizeAs(keys);
+            after.set(PropertiesAdapter.getNode().getProperties());
+        });
+
+        childThread.start();
+        childThread.join(1000);
+
+        assertThat(after.get()).isNotNull().isSameAs(before.get());
+    }
+
+    @Test
+    @DisplayName("test that changes made through the collection views of a child thread stay in that thread")
+    void test_collectionViewChanges_stayInTheirThread() throws InterruptedException {
+        System.setProperty("fruit", "apple");
+        System.setProperty("vegetable", "carrot");
+
+        AtomicReference<String> fruitRef = new AtomicReference<>();
+        AtomicReference<String> vegetableRef = new AtomicReference<>();
+        var childThread = new Thread(() -> {
+            for (var entry : System.getProperties().entrySet()) {
+                if ("fruit".equals(entry.getKey())) entry.setValue("banana");
+            }
+            System.getProperties().keySet().removeIf("vegetable"::equals);
+            fruitRef.set(System.getProperty("fruit"));
+            vegetableRef.set(System.getProperty("vegetable"));
+        });
+
+        childThread.start();
+        childThread.join(1000);
+
+        assertThat(fruitRef).hasValue("banana");
+        assertThat(vegetableRef).hasValue(null);
+        assertThat(System.getProperty("fruit")).isEqualTo("apple");
+        assertThat(System.getProperty("vegetable")).isEqualTo("carrot");
+
+        System.getProperties().values().removeIf("carrot"::equals);
+        assertThat(System.getProperty("vegetable")).isNull();
+    }
 }
@@ -0,0 +1,69 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SystemSafeExtension.class)
+@DisplayName("Test that threads do not contend on the PropertiesAdapter")
+class ContentionTest {
+
+    private static final int TOTAL_THREADS = 32;
+    private static final int OPERATIONS_PER_THREAD = 10_000;
+
+    @Test
+    @DisplayName("test that threads can get and set properties while the adapter's monitor is held elsewhere")
+    void test_propertyAccess_doesNotLockTheAdapter() throws InterruptedException {
+        var key = "key";
+        var value = "value";
+
+        var failures = new ConcurrentLinkedQueue<String>();
+        var finished = new CountDownLatch(TOTAL_THREADS);
+        List<Thread> threads = new ArrayList<>();
+
+        for (var i = 0; i < TOTAL_THREADS; i++) {
+            var threadValue = format("%s-%d", value, i);
+            threads.add(new Thread(() -> {
+                runOperations(key, threadValue, failures);
+                finished.countDown();
+            }));
+        }
+
+        var monitor = System.getProperties();
+        assertThat(monitor).isInstanceOf(PropertiesAdapter.class);
+        synchronized (monitor) {
+            threads.forEach(Thread::start);
+
+            // every thread would be stuck behind this monitor if the adapter still locked on itself
+            assertThat(finished.await(10, SECONDS)).isTrue();
+            assertThat(Thread.holdsLock(monitor)).isTrue();
+        }
+
+        assertThat(failures).isEmpty();
+        assertThat(System.getProperty(key)).isNull();
+    }
+
+    private static void runOperations(final String key, final String value, final Queue<String> failures) {
+        for (var i = 0; i < OPERATIONS_PER_THREAD; i++) {
+            System.setProperty(key, value);
+            System.getProperties().merge(key, "!", (oldValue, suffix) -> oldValue.toString() + suffix);
+            System.getProperties().computeIfPresent(key, (k, v) -> v.toString().replace("!", ""));
+
+            var actual = System.getProperty(key);
+            if (!value.equals(actual)) {
+                failures.add(format("expected %s but was %s", value, actual));
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.RepetitionInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SystemSafeExtension.class)
+@DisplayName("Test how the default locale and time zone are isolated between tests")
+class DefaultsTest {
+
+    private static final List<Locale> LOCALES = List.of(Locale.FRANCE, Locale.JAPAN, Locale.GERMANY,
+            Locale.forLanguageTag("sr-Latn-RS"), new Locale("th", "TH", "TH"));
+    private static final List<String> TIME_ZONES = List.of("Europe/Paris", "Asia/Tokyo", "America/New_York",
+            "Australia/Sydney", "Pacific/Auckland");
+    private static final int INHERITING_THREADS = 10_000;
+
+    @RepeatedTest(10)
+    @DisplayName("test that the defaults set by one test are not seen by any other")
+    void test_defaults_areIsolatedBetweenTests(final RepetitionInfo repetitionInfo) {
+        assertThat(SystemSafe.getLocale()).isEqualTo(Locale.getDefault());
+        assertThat(SystemSafe.getTimeZone()).isEqualTo(TimeZone.getDefault());
+
+        var index = repetitionInfo.getCurrentRepetition() % LOCALES.size();
+        var locale = LOCALES.get(index);
+        var timeZone = TimeZone.getTimeZone(TIME_ZONES.get(index));
+
+        SystemSafe.setLocale(locale);
+        SystemSafe.setTimeZone(timeZone);
+
+        assertThat(SystemSafe.getLocale()).isEqualTo(locale);
+        assertThat(SystemSafe.getTimeZone()).isEqualTo(timeZone);
+    }
+
+    @Test
+    @DisplayName("test that the defaults are only read from properties once a test has set them")
+    void test_defaults_areOnlyReadOnceSet() {
+        var zone = TimeZone.getDefault().getID().equals("Asia/Tokyo") ? "Europe/Paris" : "Asia/Tokyo";
+        System.setProperty("user.timezone", zone);
+        System.setProperty("user.language", "ja");
+        System.setProperty("user.country", "JP");
+
+        assertThat(SystemSafe.getTimeZone()).isEqualTo(TimeZone.getDefault());
+        assertThat(SystemSafe.getLocale()).isEqualTo(Locale.getDefault());
+
+        SystemSafe.setTimeZone(TimeZone.getTimeZone(zone));
+        SystemSafe.setLocale(Locale.JAPAN);
+
+        assertThat(SystemSafe.getTimeZone().getID()).isEqualTo(zone);
+        assertThat(SystemSafe.getLocale()).isEqualTo(Locale.JAPAN);
+    }
+
+    @Test
+    @DisplayName("test that setting the defaults adds no System Properties other than the user properties")
+    void test_setters_onlySetUserProperties() {
+        var before = new HashSet<>(System.getProperties().stringPropertyNames());
+
+        SystemSafe.setLocale(Locale.KOREA);
+        SystemSafe.setTimeZone(TimeZone.getTimeZone("Asia/Seoul"));
+
+        var added = new HashSet<>(System.getProperties().stringPropertyNames());
+        added.removeAll(before);
+        assertThat(added).allMatch(key -> key.startsWith("user."));
+    }
+
+    @Test
+    @DisplayName("test that spawned child threads inherit their parent's defaults")
+    void test_childThreads_inheritDefaults() throws InterruptedException {
+        SystemSafe.setLocale(Locale.ITALY);
+        SystemSafe.setTimeZone(TimeZone.getTimeZone("Europe/Rome"));
+
+        AtomicReference<Locale> localeRef = new AtomicReference<>();
+        AtomicReference<TimeZone> timeZoneRef = new AtomicReference<>();
+        var childThread = new Thread(() -> {
+            localeRef.set(SystemSafe.getLocale());
+            timeZoneRef.set(SystemSafe.getTimeZone());
+        });
+        childThread.start();
+        childThread.join(1000);
+
+        assertThat(localeRef).hasValue(Locale.ITALY);
+        assertThat(timeZoneRef.get().getID()).isEqualTo("Europe/Rome");
+    }
+
+    @Test
+    @DisplayName("test that threads inheriting from a thread that is setting the locale never see it partly set")
+    void test_inheritingThreads_neverSeePartlySetLocale() throws InterruptedException {
+        var expected = List.of(LOCALES.get(0), LOCALES.get(3));
+        var running = new AtomicBoolean(true);
+        AtomicReference<PropertiesNode> setterNode = new AtomicReference<>();
+        AtomicReference<PropertiesNode> setterDefaults = new AtomicReference<>();
+        var setter = new Thread(() -> {
+            setterDefaults.set(SystemDefaults.getNode());
+            setterNode.set(PropertiesAdapter.getNode());
+            for (var i = 0; running.get(); i++) {
+                SystemSafe.setLocale(expected.get(i % 2));
+            }
+        });
+        SystemSafe.setLocale(expected.get(0));
+
+        setter.start();
+        try {
+            while (setterNode.get() == null) {
+                Thread.onSpinWait();
+            }
+            for (var i = 0; i < INHERITING_THREADS; i++) {
+                var previous = PropertiesAdapter.swapProperties(new PropertiesNode(setterNode.get()));
+                var previousDefaults = SystemDefaults.swapDefaults(new PropertiesNode(setterDefaults.get()));
+                try {
+                    assertThat(SystemSafe.getLocale()).isIn(expected);
+                    assertThat(new Locale(System.getProperty("user.language"), System.getProperty("user.country"),
+                            System.getProperty("user.variant"))).isIn(expected);
+                } finally {
+                    SystemDefaults.swapDefaults(previousDefaults);
+                    PropertiesAdapter.swapProperties(previous);
+                }
+            }
+        } finally {
+            running.set(false);
+            setter.join(1000);
+        }
+    }
+}
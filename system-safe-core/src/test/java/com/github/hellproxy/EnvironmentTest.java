@@ -0,0 +1,70 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(SystemSafeExtension.class)
+@DisplayName("Test how environment variables are isolated between tests")
+class EnvironmentTest {
+
+    private static final String NAME = "SYSTEM_SAFE_TEST_VARIABLE";
+    private static final String PATH = "PATH";
+
+    @RepeatedTest(10)
+    @DisplayName("test that environment variables set by one test are not seen by any other")
+    void test_setenv_isIsolatedBetweenTests() {
+        assertThat(SystemSafe.getenv(NAME)).isNull();
+
+        SystemSafe.setenv(NAME, "value");
+        SystemSafe.unsetenv(PATH);
+
+        assertThat(SystemSafe.getenv(NAME)).isEqualTo("value");
+        assertThat(SystemSafe.getenv()).containsEntry(NAME, "value").doesNotContainKey(PATH);
+        assertThat(System.getenv(NAME)).isNull();
+    }
+
+    @Test
+    @DisplayName("test that the real environment is seen until it is changed")
+    void test_getenv_seesRealEnvironment() {
+        assertThat(SystemSafe.getenv()).isEqualTo(System.getenv());
+        assertThat(SystemSafe.getenv(PATH)).isEqualTo(System.getenv(PATH));
+        assertThatThrownBy(() -> SystemSafe.getenv().put(NAME, "value"))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    @DisplayName("test that spawned child threads and wrapped tasks inherit their parent's environment")
+    void test_childThreads_inheritEnvironment() throws InterruptedException, ExecutionException, TimeoutException {
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            // start the pooled thread before any variables are set, so that it cannot inherit them
+            executor.submit(() -> SystemSafe.getenv(NAME)).get(1, SECONDS);
+            SystemSafe.setenv(NAME, "value");
+
+            AtomicReference<String> threadLookupRef = new AtomicReference<>();
+            var childThread = new Thread(() -> threadLookupRef.set(SystemSafe.getenv(NAME)));
+            childThread.start();
+            childThread.join(1000);
+
+            var wrapped = SystemSafe.wrap(executor).submit(() -> SystemSafe.getenv(NAME)).get(1, SECONDS);
+            var unwrapped = executor.submit(() -> SystemSafe.getenv(NAME)).get(1, SECONDS);
+
+            assertThat(threadLookupRef).hasValue("value");
+            assertThat(wrapped).isEqualTo("value");
+            assertThat(unwrapped).isNull();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SystemSafeExtension.class)
+@DisplayName("Test how properties are passed to tasks running on pooled threads")
+class ExecutorTest {
+
+    private static final String KEY = "key";
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void beforeEach() throws ExecutionException, InterruptedException, TimeoutException {
+        executor = Executors.newSingleThreadExecutor();
+
+        // start the pooled thread before any properties are set, so that it cannot inherit them
+        executor.submit(() -> System.getProperty(KEY)).get(1, SECONDS);
+    }
+
+    @AfterEach
+    void afterEach() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("test that wrapped tasks see the properties of the thread that submitted them")
+    void test_wrappedTasks_seeSubmitterProperties() throws ExecutionException, InterruptedException, TimeoutException {
+        System.setProperty(KEY, "value");
+
+        var unwrapped = executor.submit(() -> System.getProperty(KEY)).get(1, SECONDS);
+        var wrapped = SystemSafe.wrap(executor).submit(() -> System.getProperty(KEY)).get(1, SECONDS);
+
+        assertThat(unwrapped).isNull();
+        assertThat(wrapped).isEqualTo("value");
+    }
+
+    @Test
+    @DisplayName("test that wrapped tasks do not interact with each other's or their submitter's properties")
+    void test_wrappedTasks_doNotInteract() throws ExecutionException, InterruptedException, TimeoutException {
+        System.setProperty(KEY, "value");
+        var wrappedExecutor = SystemSafe.wrap(executor);
+
+        wrappedExecutor.submit(() -> System.setProperty(KEY, "task-1")).get(1, SECONDS);
+        var futures = wrappedExecutor.invokeAll(List.of(
+                () -> System.setProperty(KEY, "task-2"),
+                () -> System.getProperty(KEY)));
+
+        assertThat(futures.get(0).get()).isEqualTo("value");
+        assertThat(futures.get(1).get()).isEqualTo("value");
+        assertThat(System.getProperty(KEY)).isEqualTo("value");
+        assertThat(executor.submit(() -> System.getProperty(KEY)).get(1, SECONDS)).isNull();
+    }
+
+    @Test
+    @DisplayName("test that wrapped tasks still running when a scope closes keep its properties and their own writes")
+    void test_wrappedTasks_keepScopeOnceClosed() throws ExecutionException, InterruptedException, TimeoutException {
+        System.setProperty(KEY, "value");
+        var wrappedExecutor = SystemSafe.wrap(executor);
+        var written = new CountDownLatch(1);
+        var closed = new CountDownLatch(1);
+
+        Future<String> running;
+        Future<String> pending;
+        try (var scope = SystemSafe.with(Map.of(KEY, "scope")).open()) {
+            running = wrappedExecutor.submit(() -> {
+                System.setProperty("task", "written");
+                written.countDown();
+                closed.await(1, SECONDS);
+                return System.getProperty(KEY) + "," + System.getProperty("task");
+            });
+            pending = wrappedExecutor.submit(() -> System.getProperty(KEY));
+            written.await(1, SECONDS);
+        }
+        closed.countDown();
+
+        assertThat(running.get(1, SECONDS)).isEqualTo("scope,written");
+        assertThat(pending.get(1, SECONDS)).isEqualTo("scope");
+        assertThat(System.getProperty(KEY)).isEqualTo("value");
+        assertThat(System.getProperty("task")).isNull();
+    }
+
+    @Test
+    @DisplayName("test that a chain of async stages sees the properties of the thread that started it")
+    void test_supplyAsync_stagesSeeSubmitterProperties() throws ExecutionException, InterruptedException,
+            TimeoutException {
+        System.setProperty(KEY, "value");
+
+        var result = SystemSafe.supplyAsync(() -> System.getProperty(KEY), executor)
+                .thenApplyAsync(value -> value + "," + System.getProperty(KEY))
+                .thenApplyAsync(value -> value + "," + System.setProperty(KEY, "stage"))
+                .get(1, SECONDS);
+
+        assertThat(result).isEqualTo("value,value,value");
+        assertThat(System.getProperty(KEY)).isEqualTo("value");
+    }
+
+    @Test
+    @DisplayName("test that fork-join workers spawned during a test do not inherit its properties")
+    void test_forkJoinWorkers_doNotInheritProperties() throws ExecutionException, InterruptedException,
+            TimeoutException {
+        System.setProperty(KEY, "value");
+        var pool = new ForkJoinPool(1, new SystemSafeForkJoinWorkerThreadFactory(), null, false);
+
+        try {
+            var unwrapped = SystemSafe.runAsync(() -> {
+            }, pool).thenApplyAsync(ignored -> System.getProperty(KEY), pool);
+            var wrapped = SystemSafe.supplyAsync(() -> System.getProperty(KEY), pool);
+
+            assertThat(unwrapped.get(1, SECONDS)).isNull();
+            assertThat(wrapped.get(1, SECONDS)).isEqualTo("value");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
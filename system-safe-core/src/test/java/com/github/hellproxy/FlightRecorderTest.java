@@ -0,0 +1,63 @@
+package com.github.hellproxy;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@ExtendWith(SystemSafeExtension.class)
+@DisplayName("Test the JFR events recorded by SystemSafe")
+class FlightRecorderTest {
+
+    @Test
+    @DisplayName("test that reads and writes of System Properties are recorded once the event is enabled")
+    void test_propertyAccess_isRecordedWhenEnabled(@TempDir final Path directory) throws Exception {
+        var events = record(directory, "com.github.hellproxy.PropertyAccess", () -> {
+            System.setProperty("jfr.vegetable", "carrot");
+            System.getProperty("jfr.vegetable");
+        });
+
+        assertThat(events)
+                .filteredOn(event -> event.getString("key").startsWith("jfr."))
+                .extracting(event -> event.getString("key"), event -> event.getBoolean("write"))
+                .containsExactly(tuple("jfr.vegetable", true), tuple("jfr.vegetable", false));
+    }
+
+    @Test
+    @DisplayName("test that the entries of a properties layer are recorded when its node is removed")
+    void test_propertiesLayer_isRecordedWhenRemoved(@TempDir final Path directory) throws Exception {
+        var events = record(directory, "com.github.hellproxy.PropertiesLayer", () ->
+                SystemSafe.with(Map.of("fruit", "apple")).run(() -> {
+                    System.setProperty("jfr.vegetable", "carrot");
+                    System.setProperty("jfr.nut", "almond");
+                }));
+
+        assertThat(events).anySatisfy(event -> {
+            assertThat(event.getInt("keys")).isEqualTo(2);
+            assertThat(event.getLong("bytes")).isPositive();
+        });
+    }
+
+    private static List<RecordedEvent> record(final Path directory, final String event, final Runnable task)
+            throws Exception {
+        var file = directory.resolve("recording.jfr");
+        try (var recording = new Recording()) {
+            recording.enable(event);
+            recording.start();
+            task.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file);
+    }
+}
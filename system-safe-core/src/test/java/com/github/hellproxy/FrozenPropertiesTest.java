@@ -0,0 +1,55 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Properties;
+
+import static java.lang.String.format;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Test frozen copies of properties")
+class FrozenPropertiesTest {
+
+    private static final int TOTAL_PROPERTIES = 1000;
+
+    @Test
+    @DisplayName("test that a frozen copy has the same entries as the properties it was copied from")
+    void test_copyOf_hasSameEntries() {
+        var properties = new Properties();
+        for (var i = 0; i < TOTAL_PROPERTIES; i++) {
+            properties.setProperty(format("key-%d", i), format("value-%d", i));
+        }
+
+        var frozenProperties = FrozenProperties.copyOf(properties);
+
+        assertThat(frozenProperties).hasSize(TOTAL_PROPERTIES).isEqualTo(properties);
+        assertThat(new HashMap<>(frozenProperties)).isEqualTo(properties);
+        assertThat(frozenProperties.getProperty("key-42")).isEqualTo("value-42");
+        assertThat(frozenProperties.getProperty("key-1000")).isNull();
+    }
+
+    @Test
+    @DisplayName("test that a frozen copy cannot be modified")
+    void test_copyOf_isImmutable() {
+        var frozenProperties = FrozenProperties.copyOf(new Properties());
+
+        assertThatThrownBy(() -> frozenProperties.setProperty("fruit", "apple"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> frozenProperties.merge("fruit", "apple", (a, b) -> b))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThat(frozenProperties).isEmpty();
+    }
+
+    @Test
+    @DisplayName("test that the initial System Properties are frozen")
+    void test_initialSystemProperties_areFrozen() {
+        var initialSystemProperties = SystemSafeExtension.getInitialSystemProperties();
+
+        assertThat(initialSystemProperties.getProperty("java.version")).isEqualTo(System.getProperty("java.version"));
+        assertThatThrownBy(() -> initialSystemProperties.setProperty("java.version", "0"))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+}
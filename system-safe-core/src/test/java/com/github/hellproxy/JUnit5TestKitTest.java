@@ -2,19 +2,29 @@ package com.github.hellproxy;
 
 import jdk.jfr.Description;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.platform.testkit.engine.EngineTestKit;
 
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectNestedClass;
 
 @Slf4j
 @DisplayName("Test using JUnit5 test kit")
 class JUnit5TestKitTest {
 
+    private static final int NESTED_REPETITIONS = 10;
+
     @Test
     @Description("test that RepetitionTest still passes in the JUnit5 test kit context")
     void test_canRunRepetitionTest_withJUnit5TestKit() {
@@ -28,10 +38,133 @@ class JUnit5TestKitTest {
                 .execute()
                 .testEvents()
                 .debug()
-                .assertStatistics(stats -> stats.started(RepetitionTest.TOTAL_REPETITIONS).succeeded(RepetitionTest.TOTAL_REPETITIONS));
+                .assertStatistics(stats -> stats.started(RepetitionTest.TOTAL_REPETITIONS)
+                        .succeeded(RepetitionTest.TOTAL_REPETITIONS));
+
+        var propertiesAfter = new HashMap<>(System.getProperties());
+
+        assertThat(propertiesBefore).isNotEmpty().isEqualTo(propertiesAfter);
+    }
+
+    @Test
+    @Description("test that RepetitionTest still passes when run sequentially, with undo logs instead of layers")
+    void test_canRunRepetitionTest_sequentially() {
+        var propertiesBefore = new HashMap<>(System.getProperties());
+
+        EngineTestKit
+                .engine("junit-jupiter")
+                .configurationParameter("junit.jupiter.execution.parallel.enabled", "false")
+                .selectors(selectClass(RepetitionTest.class))
+                .execute()
+                .testEvents()
+                .debug()
+                .assertStatistics(stats -> stats.started(RepetitionTest.TOTAL_REPETITIONS)
+                        .succeeded(RepetitionTest.TOTAL_REPETITIONS));
 
         var propertiesAfter = new HashMap<>(System.getProperties());
 
         assertThat(propertiesBefore).isNotEmpty().isEqualTo(propertiesAfter);
     }
+
+    @Test
+    @Description("test that RepetitionTest passes when run sequentially outside any test, without touching the "
+            + "properties shared by threads outside any test")
+    void test_canRunRepetitionTest_sequentiallyOutsideAnyTest() throws ExecutionException, InterruptedException {
+        var sharedBefore = new HashMap<>(SystemSafeExtension.getSharedSystemProperties());
+        var runner = Executors.newSingleThreadExecutor();
+        try {
+            runner.submit(() -> {
+                CapturedContext.clean().install();
+                EngineTestKit
+                        .engine("junit-jupiter")
+                        .configurationParameter("junit.jupiter.execution.parallel.enabled", "false")
+                        .selectors(selectClass(RepetitionTest.class))
+                        .execute()
+                        .testEvents()
+                        .assertStatistics(stats -> stats
+                                .started(RepetitionTest.TOTAL_REPETITIONS)
+                                .succeeded(RepetitionTest.TOTAL_REPETITIONS));
+            }).get();
+        } finally {
+            runner.shutdown();
+        }
+
+        assertThat(new HashMap<>(SystemSafeExtension.getSharedSystemProperties())).isEqualTo(sharedBefore);
+    }
+
+    @Test
+    @Description("test that a test class run sequentially never shares its properties with threads outside any test")
+    void test_sequentialTestClass_neverSharesItsProperties() {
+        EngineTestKit
+                .engine("junit-jupiter")
+                .configurationParameter("junit.jupiter.execution.parallel.enabled", "false")
+                .selectors(selectClass(ClassScopeTest.class))
+                .execute()
+                .testEvents()
+                .debug()
+                .assertStatistics(stats -> stats.started(1).succeeded(1));
+
+        assertThat(SystemSafeExtension.getSharedSystemProperties().getProperty(ClassScopeTest.CLASS_SCOPE)).isNull();
+    }
+
+    @Test
+    @Description("test that a nested test class sees the properties of its enclosing test class, whether tests are "
+            + "run in parallel or sequentially")
+    void test_canRunNestedTest_inParallelAndSequentially() {
+        for (var parallel : List.of("true", "false")) {
+            EngineTestKit
+                    .engine("junit-jupiter")
+                    .configurationParameter("junit.jupiter.execution.parallel.enabled", parallel)
+                    .configurationParameter("junit.jupiter.execution.parallel.mode.default", "concurrent")
+                    .selectors(selectNestedClass(List.of(EnclosingTest.class), EnclosingTest.NestedTest.class))
+                    .execute()
+                    .testEvents()
+                    .debug()
+                    .assertStatistics(stats -> stats.started(NESTED_REPETITIONS).succeeded(NESTED_REPETITIONS));
+        }
+    }
+
+    @ExtendWith(SystemSafeExtension.class)
+    @DisplayName("Test a test class that writes System Properties during class setup")
+    static class ClassScopeTest {
+
+        static final String CLASS_SCOPE = "classScope";
+
+        @BeforeAll
+        static void beforeAll() {
+            System.setProperty(CLASS_SCOPE, "CLASS_STATE");
+        }
+
+        @Test
+        @DisplayName("test that the class scope is never shared with threads outside of any test")
+        void test_classScope_isNotShared() {
+            assertThat(System.getProperty(CLASS_SCOPE)).isEqualTo("CLASS_STATE");
+            assertThat(SystemSafeExtension.getSharedSystemProperties().getProperty(CLASS_SCOPE)).isNull();
+        }
+    }
+
+    @ExtendWith(SystemSafeExtension.class)
+    @SystemProperty(key = "fruit", value = "apple")
+    @DisplayName("Test a test class that encloses a nested test class")
+    static class EnclosingTest {
+
+        @BeforeAll
+        static void beforeAll() {
+            System.setProperty("vegetable", "carrot");
+        }
+
+        @Nested
+        @DisplayName("Test a nested test class")
+        class NestedTest {
+
+            @RepeatedTest(NESTED_REPETITIONS)
+            @DisplayName("test that a nested test class sees the properties of its enclosing test class")
+            void test_nestedTest_seesEnclosingProperties() {
+                assertThat(System.getProperty("fruit")).isEqualTo("apple");
+                assertThat(System.getProperty("vegetable")).isEqualTo("carrot");
+
+                System.setProperty("vegetable", "potato");
+            }
+        }
+    }
 }
@@ -0,0 +1,166 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.RepetitionInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import static java.lang.String.format;
+import static java.lang.System.lineSeparator;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SystemSafeExtension.class)
+@DisplayName("Test how output is captured for each test")
+class OutputTest {
+
+    private static final int TOTAL_LINES = 1000;
+    private static final int CHAIN_LENGTH = 10_000;
+    private static final int THREADS = 8;
+
+    @RepeatedTest(10)
+    @DisplayName("test that output written by one test is not captured by any other")
+    void test_capturedOutput_isIsolatedBetweenTests(final RepetitionInfo repetitionInfo) {
+        var repetition = repetitionInfo.getCurrentRepetition();
+
+        assertThat(SystemSafe.getCapturedOut()).isEmpty();
+
+        var expected = new StringBuilder();
+        for (var i = 0; i < TOTAL_LINES; i++) {
+            var line = format("repetition-%d-line-%d", repetition, i);
+            System.out.println(line);
+            expected.append(line).append(lineSeparator());
+        }
+        System.err.printf("repetition-%d%n", repetition);
+
+        assertThat(SystemSafe.getCapturedOut()).isEqualTo(expected.toString());
+        assertThat(SystemSafe.getCapturedErr()).isEqualTo(format("repetition-%d%n", repetition));
+    }
+
+    @Test
+    @DisplayName("test that output from spawned child threads and wrapped tasks is captured with their parent's")
+    void test_capturedOutput_includesChildThreads() throws InterruptedException, ExecutionException, TimeoutException {
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            // start the pooled thread before anything is captured, so that it cannot inherit the capture
+            executor.submit(() -> System.out.print("")).get(1, SECONDS);
+
+            var childThread = new Thread(() -> System.out.print("child"));
+            childThread.start();
+            childThread.join(1000);
+
+            executor.submit(() -> System.out.print("unwrapped")).get(1, SECONDS);
+            SystemSafe.wrap(executor).submit(() -> System.out.print("wrapped")).get(1, SECONDS);
+
+            assertThat(SystemSafe.getCapturedOut()).isEqualTo("childwrapped");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("test that threads printing through the same removed output nodes at once all find the same capture")
+    void test_outputNodes_areSafeWhenCompressedConcurrently() throws Exception {
+        var capture = newCapture();
+        var root = new OutputNode(null, capture);
+        var nodes = new ArrayList<OutputNode>();
+        var node = root;
+        for (var i = 0; i < CHAIN_LENGTH; i++) {
+            node = new OutputNode(node, newCapture());
+            nodes.add(node);
+        }
+
+        var executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            var resolvers = new ArrayList<Future<?>>();
+            for (var i = 0; i < THREADS; i++) {
+                var random = new Random(i);
+                resolvers.add(executor.submit(() -> {
+                    for (var j = 0; j < CHAIN_LENGTH * 10; j++) {
+                        assertThat(nodes.get(random.nextInt(CHAIN_LENGTH)).getCapture()).isNotNull();
+                    }
+                }));
+            }
+            for (var i = CHAIN_LENGTH - 1; i >= 0; i--) {
+                nodes.get(i).remove();
+            }
+            for (var resolver : resolvers) {
+                resolver.get(30, SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (var removed : nodes) {
+            assertThat(removed.getCapture()).isSameAs(capture);
+        }
+    }
+
+    @Test
+    @DisplayName("test that nothing is captured for a test until it writes output")
+    void test_capture_isCreatedOnFirstWrite() {
+        var capture = newCapture();
+        assertThat(capture.getCapturedOut()).isEmpty();
+
+        capture.getOut().print("apple");
+        assertThat(capture.getCapturedOut()).isEqualTo("apple");
+
+        capture.release();
+        assertThat(capture.getCapturedOut()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("test that closing System.out in a test keeps capturing what the test writes afterwards")
+    void test_close_inTest_keepsCapturing() {
+        System.out.print("apple");
+        System.out.close();
+        System.out.print("banana");
+
+        assertThat(System.out.checkError()).isFalse();
+        assertThat(SystemSafe.getCapturedOut()).isEqualTo("applebanana");
+    }
+
+    @Test
+    @DisplayName("test that closing System.out outside of any test leaves the original stream open")
+    void test_close_outsideAnyTest_leavesOriginalOpen() {
+        var previous = CapturedContext.clean().install();
+        try {
+            System.out.close();
+            System.out.print("");
+            assertThat(System.out.checkError()).isFalse();
+        } finally {
+            previous.install();
+        }
+    }
+
+    @Test
+    @DisplayName("test that output over the limit is passed on, but not captured")
+    void test_capture_keepsOutputUpToLimit() {
+        var capture = newCapture(5);
+
+        capture.getOut().print("apple");
+        capture.getOut().print("banana");
+        capture.getErr().print('c');
+
+        assertThat(capture.getCapturedOut()).startsWith("apple").contains("6 more bytes").doesNotContain("banana");
+        assertThat(capture.getCapturedErr()).isEqualTo("c");
+        capture.release();
+    }
+
+    private static OutputCapture newCapture() {
+        return newCapture(SystemSafeExtension.DEFAULT_OUTPUT_LIMIT);
+    }
+
+    private static OutputCapture newCapture(final int limit) {
+        return new OutputCapture(System.out, Charset.defaultCharset(), System.err, Charset.defaultCharset(), limit);
+    }
+}
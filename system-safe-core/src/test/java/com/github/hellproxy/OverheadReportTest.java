@@ -0,0 +1,49 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.platform.testkit.engine.EngineTestKit;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+
+@DisplayName("Test reporting the overhead of each test context")
+class OverheadReportTest {
+
+    @Test
+    @DisplayName("test that a row is reported for each test class and test method")
+    void test_report_hasRowPerContext(@TempDir final Path directory) throws Exception {
+        execute("true", directory);
+
+        var lines = Files.readAllLines(directory.resolve(OverheadReport.CSV_FILE));
+        assertThat(lines.get(0)).startsWith("kind,id,parent,setUpNanos,tearDownNanos");
+        assertThat(lines).anyMatch(line -> line.startsWith("class,") && line.contains("OverlayTest"));
+        assertThat(lines).anyMatch(line -> line.startsWith("method,") && line.contains("OverlayTest"));
+        assertThat(Files.readString(directory.resolve(OverheadReport.JSON_FILE)))
+                .contains("\"contexts\"", "\"overheadNanos\"", "\"bytes\"", "\"depth\"");
+    }
+
+    @Test
+    @DisplayName("test that nothing is reported unless the report is enabled")
+    void test_report_disabledByDefault(@TempDir final Path directory) {
+        execute("false", directory);
+
+        assertThat(directory.resolve(OverheadReport.CSV_FILE)).doesNotExist();
+        assertThat(directory.resolve(OverheadReport.JSON_FILE)).doesNotExist();
+    }
+
+    private static void execute(final String enabled, final Path directory) {
+        EngineTestKit
+                .engine("junit-jupiter")
+                .configurationParameter(OverheadReport.ENABLED_PARAMETER, enabled)
+                .configurationParameter(OverheadReport.DIRECTORY_PARAMETER, directory.toString())
+                .selectors(selectClass(OverlayTest.class))
+                .execute()
+                .testEvents()
+                .assertStatistics(stats -> stats.failed(0).aborted(0));
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(SystemSafeExtension.class)
+@DisplayName("Test how System Properties are overlaid without the JUnit lifecycle")
+class OverlayTest {
+
+    @Test
+    @DisplayName("test that an overlay only applies while its task runs")
+    void test_run_appliesOverlayForTask() throws Exception {
+        System.setProperty("fruit", "apple");
+        var overlay = SystemSafe.with(Map.of("fruit", "banana"));
+
+        overlay.run(() -> {
+            assertThat(System.getProperty("fruit")).isEqualTo("banana");
+            System.setProperty("vegetable", "carrot");
+        });
+        var result = overlay.call(() -> System.getProperty("vegetable"));
+
+        assertThat(result).isNull();
+        assertThat(System.getProperty("fruit")).isEqualTo("apple");
+        assertThat(System.getProperty("vegetable")).isNull();
+    }
+
+    @Test
+    @DisplayName("test that nested scopes of an empty overlay only add a node once they are written to")
+    void test_emptyOverlay_addsNodesOnlyWhenWritten() {
+        System.setProperty("fruit", "apple");
+        var overlay = SystemSafe.with(Map.of());
+        var node = PropertiesAdapter.getNode();
+
+        try (var outer = overlay.open()) {
+            try (var inner = overlay.open()) {
+                assertThat(System.getProperty("fruit")).isEqualTo("apple");
+                assertThat(PropertiesAdapter.getNode()).isSameAs(node);
+            }
+            try (var inner = overlay.open()) {
+                System.setProperty("fruit", "banana");
+                assertThat(PropertiesAdapter.getNode()).isNotSameAs(node);
+            }
+            assertThat(PropertiesAdapter.getNode()).isSameAs(node);
+            assertThat(System.getProperty("fruit")).isEqualTo("apple");
+
+            System.setProperty("fruit", "cherry");
+            try (var inner = overlay.open()) {
+                System.setProperty("fruit", "damson");
+            }
+            assertThat(System.getProperty("fruit")).isEqualTo("cherry");
+        }
+
+        assertThat(PropertiesAdapter.getNode()).isSameAs(node);
+        assertThat(System.getProperty("fruit")).isEqualTo("apple");
+    }
+
+    @Test
+    @DisplayName("test that scopes can be nested")
+    void test_open_canBeNested() {
+        try (var outer = SystemSafe.with(Map.of("fruit", "apple", "vegetable", "carrot")).open()) {
+            try (var inner = SystemSafe.with(Map.of("fruit", "banana")).open()) {
+                assertThat(System.getProperty("fruit")).isEqualTo("banana");
+                assertThat(System.getProperty("vegetable")).isEqualTo("carrot");
+            }
+            assertThat(System.getProperty("fruit")).isEqualTo("apple");
+        }
+        assertThat(System.getProperty("fruit")).isNull();
+    }
+
+    @Test
+    @DisplayName("test that the scopes of an empty overlay still isolate the properties set within them")
+    void test_emptyOverlay_isolatesItsScopes() {
+        System.setProperty("fruit", "apple");
+        var overlay = SystemSafe.with(Map.of());
+
+        try (var scope = overlay.open()) {
+            assertThat(System.getProperty("fruit")).isEqualTo("apple");
+            System.setProperty("fruit", "banana");
+            System.setProperty("vegetable", "carrot");
+        }
+
+        assertThat(overlay).isSameAs(SystemSafe.with(Map.of()));
+        assertThat(System.getProperty("fruit")).isEqualTo("apple");
+        assertThat(System.getProperty("vegetable")).isNull();
+    }
+
+    @Test
+    @DisplayName("test that applying an overlay sets and clears all of its properties for good")
+    void test_apply_setsAndClearsProperties() throws Exception {
+        System.setProperty("fruit", "apple");
+        System.setProperty("nut", "almond");
+
+        SystemSafe.with(Map.of("fruit", "banana", "vegetable", "carrot"), List.of("nut")).apply();
+        var child = new AtomicReference<Map<String, String>>();
+        var thread = new Thread(() -> child.set(Map.of(
+                "fruit", System.getProperty("fruit"),
+                "vegetable", System.getProperty("vegetable"),
+                "nut", String.valueOf(System.getProperty("nut")))));
+        thread.start();
+        thread.join();
+
+        assertThat(System.getProperty("fruit")).isEqualTo("banana");
+        assertThat(System.getProperty("vegetable")).isEqualTo("carrot");
+        assertThat(System.getProperty("nut")).isNull();
+        assertThat(child.get()).isEqualTo(Map.of("fruit", "banana", "vegetable", "carrot", "nut", "null"));
+    }
+
+    @Test
+    @DisplayName("test that a property cannot be both set and cleared by the same overlay")
+    void test_with_rejectsKeysBothSetAndCleared() {
+        assertThatThrownBy(() -> SystemSafe.with(Map.of("fruit", "apple"), List.of("fruit")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
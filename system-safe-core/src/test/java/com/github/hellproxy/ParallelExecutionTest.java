@@ -0,0 +1,112 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.platform.engine.ConfigurationParameters;
+import org.junit.platform.testkit.engine.EngineTestKit;
+
+import java.util.HashMap;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DisplayName("Test the parallel execution strategy")
+class ParallelExecutionTest {
+
+    private final SystemSafeParallelExecutionConfigurationStrategy strategy =
+            new SystemSafeParallelExecutionConfigurationStrategy();
+
+    @Test
+    @DisplayName("test that the pool is sized from the available processors")
+    void test_createConfiguration_sizesPoolFromProcessors() {
+        var parameters = mock(ConfigurationParameters.class);
+        when(parameters.get("dynamic.factor")).thenReturn(Optional.of("2"));
+
+        var configuration = strategy.createConfiguration(parameters);
+
+        var parallelism = 2 * Runtime.getRuntime().availableProcessors();
+        assertThat(configuration.getParallelism()).isEqualTo(parallelism);
+        assertThat(configuration.getCorePoolSize()).isEqualTo(parallelism);
+        assertThat(configuration.getMinimumRunnable()).isEqualTo(parallelism);
+        assertThat(configuration.getMaxPoolSize()).isEqualTo(parallelism + 256);
+    }
+
+    @Test
+    @DisplayName("test that a factor that is not a positive number is rejected")
+    void test_createConfiguration_rejectsInvalidFactor() {
+        var parameters = mock(ConfigurationParameters.class);
+        when(parameters.get("dynamic.factor")).thenReturn(Optional.of("0"));
+
+        assertThatThrownBy(() -> strategy.createConfiguration(parameters))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("test that RepetitionTest still passes on workers configured by the strategy")
+    void test_canRunRepetitionTest_withStrategy() {
+        var propertiesBefore = new HashMap<>(System.getProperties());
+
+        EngineTestKit
+                .engine("junit-jupiter")
+                .configurationParameter("junit.jupiter.execution.parallel.enabled", "true")
+                .configurationParameter("junit.jupiter.execution.parallel.mode.default", "concurrent")
+                .configurationParameter("junit.jupiter.execution.parallel.config.strategy", "custom")
+                .configurationParameter("junit.jupiter.execution.parallel.config.custom.class",
+                        SystemSafeParallelExecutionConfigurationStrategy.class.getName())
+                .selectors(selectClass(RepetitionTest.class))
+                .execute()
+                .testEvents()
+                .assertStatistics(stats -> stats
+                        .started(RepetitionTest.TOTAL_REPETITIONS)
+                        .succeeded(RepetitionTest.TOTAL_REPETITIONS));
+
+        var propertiesAfter = new HashMap<>(System.getProperties());
+
+        assertThat(propertiesBefore).isNotEmpty().isEqualTo(propertiesAfter);
+    }
+
+    @Test
+    @DisplayName("test that workers only start test contexts clean in runs configured with the strategy")
+    void test_cleanWorkers_onlyInRunsWithStrategy() {
+        CleanWorkerTest.clean = true;
+        execute(CleanWorkerTest.class, true);
+
+        CleanWorkerTest.clean = false;
+        execute(CleanWorkerTest.class, false);
+    }
+
+    private static void execute(final Class<?> testClass, final boolean withStrategy) {
+        var builder = EngineTestKit
+                .engine("junit-jupiter")
+                .configurationParameter("junit.jupiter.execution.parallel.enabled", "true")
+                .configurationParameter("junit.jupiter.execution.parallel.mode.default", "concurrent");
+        if (withStrategy) {
+            builder = builder
+                    .configurationParameter("junit.jupiter.execution.parallel.config.strategy", "custom")
+                    .configurationParameter("junit.jupiter.execution.parallel.config.custom.class",
+                            SystemSafeParallelExecutionConfigurationStrategy.class.getName());
+        }
+        builder.selectors(selectClass(testClass))
+                .execute()
+                .testEvents()
+                .assertStatistics(stats -> stats.started(1).succeeded(1));
+    }
+
+    @ExtendWith(SystemSafeExtension.class)
+    @DisplayName("Test which context a test starts with on a fork-join worker")
+    static class CleanWorkerTest {
+
+        static volatile boolean clean;
+
+        @Test
+        @DisplayName("test that the test's node is only the root of its tree when the worker was cleaned")
+        void test_node_isOnlyRootOnCleanWorker() {
+            assertThat(PropertiesAdapter.getNode().getDepth() == 1).isEqualTo(clean);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.platform.engine.discovery.ClassSelector;
+import org.junit.platform.testkit.engine.EngineTestKit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+
+@DisplayName("Test profiling which tests access System Properties")
+class ProfilerTest {
+
+    @Test
+    @DisplayName("test that a profile can be read back from the record it was written as")
+    void test_accessProfile_roundTrips() throws Exception {
+        var profile = new AccessProfile("[test:fruit]");
+        profile.record("fruit", true);
+        profile.record("vegetable", false);
+
+        var bytes = new ByteArrayOutputStream();
+        profile.writeTo(new DataOutputStream(bytes));
+        var copy = AccessProfile.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat(copy.getId()).isEqualTo("[test:fruit]");
+        assertThat(copy.isRead()).isTrue();
+        assertThat(copy.isWritten()).isTrue();
+        assertThat(copy.getReadKeys()).containsExactly("vegetable");
+        assertThat(copy.getWrittenKeys()).containsExactly("fruit");
+    }
+
+    @Test
+    @DisplayName("test that tests still pass when replaying the profile they were recorded with")
+    void test_replay_passesWithRecordedProfile(@TempDir final Path directory) throws Exception {
+        var file = directory.resolve("profile.bin");
+
+        execute("record", file);
+        assertThat(Files.size(file)).isPositive();
+        execute("replay", file);
+    }
+
+    @Test
+    @DisplayName("test that a test whose only writes set many properties at once is recorded as writing them")
+    void test_replay_passesWithOnlyBulkWrites(@TempDir final Path directory) throws Exception {
+        var file = directory.resolve("profile.bin");
+
+        execute("record", file, selectClass(BulkWriteTest.class));
+        var writtenKeys = new HashSet<String>();
+        for (var profile : readProfiles(file)) {
+            writtenKeys.addAll(profile.getWrittenKeys());
+        }
+        assertThat(writtenKeys).containsExactlyInAnyOrder("fruit", "vegetable", "nut");
+        execute("replay", file, selectClass(BulkWriteTest.class));
+    }
+
+    @Test
+    @DisplayName("test that every keyed method of the System Properties records the key it accesses")
+    void test_record_recordsKeysOfEveryKeyedMethod(@TempDir final Path directory) throws Exception {
+        var file = directory.resolve("profile.bin");
+
+        execute("record", file, selectClass(KeyedAccessTest.class));
+        var readKeys = new HashSet<String>();
+        var writtenKeys = new HashSet<String>();
+        for (var profile : readProfiles(file)) {
+            readKeys.addAll(profile.getReadKeys());
+            writtenKeys.addAll(profile.getWrittenKeys());
+        }
+        assertThat(readKeys).contains("apple", "banana");
+        assertThat(writtenKeys).contains("cherry", "damson", "elderberry", "fig", "grape", "honeydew", "kiwi");
+        execute("replay", file, selectClass(KeyedAccessTest.class));
+    }
+
+    @Test
+    @DisplayName("test that a test that writes despite its replayed profile gets its own layer rather than failing")
+    void test_replay_givesLayerWhenProfileIsOutOfDate(@TempDir final Path directory) {
+        var file = directory.resolve("profile.bin");
+
+        execute("record", file, selectClass(OutOfDateTest.class));
+        OutOfDateTest.writes = true;
+        try {
+            execute("replay", file, selectClass(OutOfDateTest.class));
+        } finally {
+            OutOfDateTest.writes = false;
+        }
+    }
+
+    private static List<AccessProfile> readProfiles(final Path file) throws Exception {
+        var profiles = new ArrayList<AccessProfile>();
+        try (var input = new DataInputStream(Files.newInputStream(file))) {
+            while (input.available() > 0) {
+                profiles.add(AccessProfile.readFrom(input));
+            }
+        }
+        return profiles;
+    }
+
+    private static void execute(final String mode, final Path file) {
+        execute(mode, file, selectClass(OverlayTest.class), selectClass(DefaultsTest.class));
+    }
+
+    private static void execute(final String mode, final Path file, final ClassSelector... selectors) {
+        EngineTestKit
+                .engine("junit-jupiter")
+                .configurationParameter(PropertiesProfiler.MODE_PARAMETER, mode)
+                .configurationParameter(PropertiesProfiler.FILE_PARAMETER, file.toString())
+                .selectors(selectors)
+                .execute()
+                .testEvents()
+                .assertStatistics(stats -> stats.failed(0).aborted(0));
+    }
+
+    @ExtendWith(SystemSafeExtension.class)
+    @DisplayName("Test writing System Properties only in bulk")
+    static class BulkWriteTest {
+
+        @Test
+        @DisplayName("test that properties can be set and cleared without being written one at a time")
+        void test_setProperties_onlyWritesInBulk() {
+            SystemSafe.setProperties(Map.of("fruit", "apple", "vegetable", "carrot"));
+            SystemSafe.with(Map.of(), List.of("nut")).apply();
+        }
+    }
+
+    @ExtendWith(SystemSafeExtension.class)
+    @DisplayName("Test writing System Properties only once the profile has been recorded")
+    static class OutOfDateTest {
+
+        static volatile boolean writes;
+
+        @BeforeAll
+        static void beforeAll() {
+            System.setProperty("fruit", "apple");
+        }
+
+        @RepeatedTest(2)
+        @DisplayName("test that the properties of the test class are never changed by its tests")
+        void test_write_neverChangesTestClass() {
+            assertThat(System.getProperty("fruit")).isEqualTo("apple");
+            if (writes) {
+                System.setProperty("fruit", "banana");
+                assertThat(System.getProperty("fruit")).isEqualTo("banana");
+            }
+        }
+    }
+
+    @ExtendWith(SystemSafeExtension.class)
+    @DisplayName("Test accessing System Properties through the keyed methods of Map")
+    static class KeyedAccessTest {
+
+        @Test
+        @DisplayName("test that properties can be read and written through the keyed methods of Map")
+        void test_keyedMethods_accessProperties() {
+            var properties = System.getProperties();
+            properties.containsKey("apple");
+            properties.getOrDefault("banana", "none");
+            properties.putIfAbsent("cherry", "red");
+            properties.compute("damson", (key, value) -> "purple");
+            properties.computeIfAbsent("elderberry", key -> "black");
+            properties.merge("fig", "green", (previous, value) -> value);
+            properties.replace("fig", "purple");
+            properties.replace("cherry", "red", "dark red");
+            properties.computeIfPresent("grape", (key, value) -> "white");
+            properties.remove("honeydew", "yellow");
+            properties.putAll(Map.of("kiwi", "brown"));
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Test copy-on-write properties layers")
+class PropertiesLayerTest {
+
+    private static final int CHAIN_LENGTH = 100;
+
+    @Test
+    @DisplayName("test that lookups fall through to the parent properties")
+    void test_lookups_fallThroughToParent() {
+        var parent = new Properties();
+        parent.setProperty("fruit", "apple");
+
+        var layer = PropertiesLayer.over(parent);
+
+        assertThat(layer.getProperty("fruit")).isEqualTo("apple");
+        assertThat(layer).containsEntry("fruit", "apple").hasSize(1);
+    }
+
+    @Test
+    @DisplayName("test that writes and removals do not reach the parent properties")
+    void test_writesAndRemovals_doNotReachParent() {
+        var parent = new Properties();
+        parent.setProperty("fruit", "apple");
+        parent.setProperty("vegetable", "carrot");
+
+        var layer = PropertiesLayer.over(parent);
+        layer.setProperty("fruit", "banana");
+        layer.remove("vegetable");
+
+        assertThat(layer).isEqualTo(Map.of("fruit", "banana"));
+        assertThat(parent).isEqualTo(Map.of("fruit", "apple", "vegetable", "carrot"));
+    }
+
+    @Test
+    @DisplayName("test that layers stacked on top of each other do not see each other's later changes")
+    void test_stackedLayers_areIsolatedFromEachOther() {
+        var bottom = PropertiesLayer.over(new Properties());
+        bottom.setProperty("fruit", "apple");
+
+        var top = PropertiesLayer.over(bottom);
+        bottom.setProperty("fruit", "banana");
+        top.setProperty("vegetable", "carrot");
+
+        assertThat(bottom).isEqualTo(Map.of("fruit", "banana"));
+        assertThat(top).isEqualTo(Map.of("fruit", "apple", "vegetable", "carrot"));
+    }
+
+    @Test
+    @DisplayName("test that clearing a layer hides every property beneath it")
+    void test_clear_hidesParentProperties() {
+        var parent = new Properties();
+        parent.setProperty("fruit", "apple");
+
+        var layer = PropertiesLayer.over(parent);
+        layer.clear();
+        layer.setProperty("vegetable", "carrot");
+
+        assertThat(new HashMap<>(layer)).isEqualTo(Map.of("vegetable", "carrot"));
+        assertThat(parent).isEqualTo(Map.of("fruit", "apple"));
+    }
+
+    @Test
+    @DisplayName("test that snapshots cannot be modified")
+    void test_snapshots_areImmutable() {
+        var layer = PropertiesLayer.over(new Properties());
+        layer.setProperty("fruit", "apple");
+
+        var snapshot = layer.snapshot();
+
+        assertThat(snapshot).isEqualTo(Map.of("fruit", "apple"));
+        assertThatThrownBy(() -> snapshot.setProperty("fruit", "banana"))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    @DisplayName("test that values remembered by frozen layers are not seen by the layers above them")
+    void test_rememberedValues_areIsolatedFromLaterLayers() {
+        var parent = new Properties();
+        parent.setProperty("fruit", "apple");
+        var layer = PropertiesLayer.over(FrozenProperties.copyOf(parent));
+
+        var snapshots = new ArrayList<PropertiesLayer>();
+        for (var i = 0; i < CHAIN_LENGTH; i++) {
+            layer.setProperty("layer-" + i, "value-" + i);
+            snapshots.add(layer.snapshot());
+        }
+        layer.setProperty("fruit", "banana");
+        layer.remove("layer-0");
+
+        for (var i = 0; i < CHAIN_LENGTH; i++) {
+            var snapshot = snapshots.get(i);
+            assertThat(snapshot.getProperty("fruit")).isEqualTo("apple");
+            assertThat(snapshot.getProperty("layer-0")).isEqualTo("value-0");
+            assertThat(snapshot.getProperty("layer-" + i)).isEqualTo("value-" + i);
+            assertThat(snapshot.getProperty("layer-" + (i + 1))).isNull();
+        }
+        assertThat(layer.getProperty("fruit")).isEqualTo("banana");
+        assertThat(layer.getProperty("layer-0")).isNull();
+        assertThat(layer.getProperty("layer-" + (CHAIN_LENGTH - 1))).isEqualTo("value-" + (CHAIN_LENGTH - 1));
+    }
+
+    @Test
+    @DisplayName("test that values are not remembered when the properties beneath a layer can still change")
+    void test_mutableParents_areNotRemembered() {
+        var parent = new Properties();
+        var snapshot = PropertiesLayer.snapshotOf(parent);
+        assertThat(snapshot.getProperty("fruit")).isNull();
+
+        parent.setProperty("fruit", "apple");
+
+        assertThat(snapshot.getProperty("fruit")).isEqualTo("apple");
+    }
+
+    @Test
+    @DisplayName("test that iterating a layer only sees the entries that are visible through it")
+    void test_iteration_appliesShadowingAndTombstones() {
+        var parent = new Properties();
+        parent.setProperty("fruit", "apple");
+        parent.setProperty("vegetable", "carrot");
+        parent.setProperty("nut", "almond");
+        var middle = PropertiesLayer.over(FrozenProperties.copyOf(parent));
+        middle.setProperty("fruit", "banana");
+        middle.remove("nut");
+        var layer = PropertiesLayer.over(middle);
+        layer.setProperty("fruit", "cherry");
+        layer.setProperty("nut", "brazil");
+        layer.remove("vegetable");
+
+        assertThat(layer).hasSize(2);
+        assertThat(layer.keySet()).containsExactlyInAnyOrder("fruit", "nut");
+        assertThat(layer.values()).containsExactlyInAnyOrder("cherry", "brazil");
+        assertThat(layer.stringPropertyNames()).containsExactlyInAnyOrder("fruit", "nut");
+        assertThat(new HashMap<>(layer)).isEqualTo(Map.of("fruit", "cherry", "nut", "brazil"));
+        assertThat(new HashMap<>(middle)).isEqualTo(Map.of("fruit", "banana", "vegetable", "carrot"));
+    }
+
+    @Test
+    @DisplayName("test that the property names of a layer only include the string entries visible through it")
+    void test_propertyNames_applyShadowingAndTombstones() {
+        var parent = new Properties();
+        parent.setProperty("fruit", "apple");
+        parent.setProperty("vegetable", "carrot");
+        parent.setProperty("nut", "almond");
+        var middle = PropertiesLayer.over(FrozenProperties.copyOf(parent));
+        middle.remove("nut");
+        middle.put("count", 1);
+        var layer = PropertiesLayer.over(middle);
+        layer.setProperty("fruit", "cherry");
+        layer.setProperty("grain", "rice");
+        layer.remove("vegetable");
+
+        var names = new ArrayList<Object>();
+        for (var propertyNames = layer.propertyNames(); propertyNames.hasMoreElements(); ) {
+            names.add(propertyNames.nextElement());
+        }
+
+        assertThat(names).containsExactlyInAnyOrder("fruit", "grain", "count");
+        assertThat(layer.stringPropertyNames())
+                .containsExactlyInAnyOrder("fruit", "grain")
+                .hasSize(2)
+                .contains("grain")
+                .doesNotContain("count", "nut", "vegetable");
+        assertThatThrownBy(() -> layer.stringPropertyNames().remove("fruit"))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    @DisplayName("test that entries removed while iterating are removed from the layer only")
+    void test_iteratorRemove_writesThroughToLayer() {
+        var parent = new Properties();
+        parent.setProperty("fruit", "apple");
+        parent.setProperty("vegetable", "carrot");
+        var layer = PropertiesLayer.over(FrozenProperties.copyOf(parent));
+
+        layer.keySet().removeIf("fruit"::equals);
+        layer.entrySet().forEach(entry -> entry.setValue("potato"));
+
+        assertThat(new HashMap<>(layer)).isEqualTo(Map.of("vegetable", "potato"));
+        assertThat(parent).isEqualTo(Map.of("fruit", "apple", "vegetable", "carrot"));
+    }
+
+    @Test
+    @DisplayName("test that iterating over the entries reuses one entry, while arrays of them get one per element")
+    void test_entryIterator_reusesOneEntry() {
+        var parent = new Properties();
+        parent.setProperty("fruit", "apple");
+        parent.setProperty("vegetable", "carrot");
+        var layer = PropertiesLayer.over(FrozenProperties.copyOf(parent));
+        layer.setProperty("nut", "almond");
+
+        var iterator = layer.entrySet().iterator();
+        var first = iterator.next();
+        var second = iterator.next();
+        second.setValue("potato");
+
+        assertThat(first).isSameAs(second);
+        assertThat(layer.getProperty((String) second.getKey())).isEqualTo("potato");
+        assertThat(new ArrayList<>(layer.entrySet()))
+                .doesNotHaveDuplicates()
+                .hasSize(3)
+                .containsExactlyElementsOf(layer.entrySet().stream().collect(toList()));
+    }
+
+    @Test
+    @DisplayName("test that the size of a layer is kept up to date as it is written to, snapshotted and reverted")
+    void test_size_followsWritesSnapshotsAndReverts() {
+        var layer = PropertiesLayer.over(FrozenProperties.copyOf(Map.of("fruit", "apple", "vegetable", "carrot")));
+        assertThat(layer.size()).isEqualTo(2);
+
+        layer.setProperty("nut", "almond");
+        layer.setProperty("fruit", "banana");
+        var snapshot = layer.snapshot();
+        layer.remove("vegetable");
+        layer.remove("grain");
+        PropertiesLayer.applyTo(layer, PropertiesLayer.overlayOf(Map.of("grain", "oat"), List.of("nut", "fruit")));
+
+        assertThat(snapshot.size()).isEqualTo(3);
+        assertThat(layer.size()).isEqualTo(1).isEqualTo(new HashMap<>(layer).size());
+
+        layer.revert(snapshot);
+        assertThat(layer.size()).isEqualTo(3);
+
+        layer.clear();
+        assertThat(layer.isEmpty()).isTrue();
+        layer.setProperty("fruit", "cherry");
+        assertThat(layer.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("test that the size of a layer over properties that can still change follows those properties")
+    void test_size_followsMutableParent() {
+        var parent = new Properties();
+        parent.setProperty("fruit", "apple");
+        var layer = PropertiesLayer.over(parent);
+        layer.setProperty("vegetable", "carrot");
+        assertThat(layer.size()).isEqualTo(2);
+
+        parent.setProperty("nut", "almond");
+
+        assertThat(layer.size()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("test that reverting a layer to a snapshot drops everything written to it since")
+    void test_revert_dropsChangesSinceSnapshot() {
+        var layer = PropertiesLayer.over(FrozenProperties.copyOf(Map.of("fruit", "apple", "vegetable", "carrot")));
+        layer.setProperty("nut", "almond");
+        var snapshot = layer.snapshot();
+
+        layer.setProperty("fruit", "banana");
+        layer.remove("nut");
+        layer.clear();
+        layer.setProperty("grain", "rice");
+        layer.revert(snapshot);
+
+        assertThat(new HashMap<>(layer)).isEqualTo(Map.of("fruit", "apple", "vegetable", "carrot", "nut", "almond"));
+        assertThat(layer.isFrozen()).isFalse();
+    }
+
+    @Test
+    @DisplayName("test that bytes written to a layer are still counted once they have been moved into a snapshot")
+    void test_writtenBytes_countedAcrossSnapshots() {
+        var layer = PropertiesLayer.over(new Properties());
+        layer.setProperty("fruit", "apple");
+        var written = layer.writtenBytes();
+
+        layer.snapshot();
+        layer.setProperty("fruit", "banana");
+
+        assertThat(written).isPositive();
+        assertThat(layer.localBytes()).isLessThan(layer.writtenBytes());
+        assertThat(layer.writtenBytes()).isGreaterThan(written);
+    }
+}
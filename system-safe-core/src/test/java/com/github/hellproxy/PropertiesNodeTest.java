@@ -0,0 +1,223 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Test how properties tree nodes are found and removed")
+class PropertiesNodeTest {
+
+    private static final int TREE_DEPTH = 100_000;
+    private static final int CHAIN_LENGTH = 10_000;
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 100_000;
+
+    @Test
+    @DisplayName("test that the head can be found past a very long chain of removed nodes")
+    void test_getHead_skipsLongChainsOfRemovedNodes() {
+        var head = new PropertiesNode(null, new Properties());
+
+        var node = head;
+        for (var i = 0; i < TREE_DEPTH; i++) {
+            node = new PropertiesNode(node, new Properties());
+            node.remove();
+        }
+
+        assertThat(node.getHead()).isSameAs(head);
+        assertThat(node.getHead()).isSameAs(head);
+    }
+
+    @Test
+    @DisplayName("test that threads resolving through the same removed nodes at once all find the same head")
+    void test_getHead_isSafeWhenCompressedConcurrently() throws Exception {
+        var root = new PropertiesNode(null, new Properties());
+        var nodes = new ArrayList<PropertiesNode>();
+        var node = root;
+        for (var i = 0; i < CHAIN_LENGTH; i++) {
+            node = new PropertiesNode(node, new Properties());
+            nodes.add(node);
+        }
+
+        var executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            var start = new CountDownLatch(1);
+            var resolvers = new ArrayList<Future<?>>();
+            for (var i = 0; i < THREADS; i++) {
+                var random = new Random(i);
+                resolvers.add(executor.submit(() -> {
+                    start.await();
+                    for (var j = 0; j < ROUNDS; j++) {
+                        assertThat(nodes.get(random.nextInt(CHAIN_LENGTH)).getHead()).isNotNull();
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (var i = CHAIN_LENGTH - 1; i >= 0; i--) {
+                nodes.get(i).remove();
+            }
+            for (var resolver : resolvers) {
+                resolver.get(30, SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (var removed : nodes) {
+            assertThat(removed.getHead()).isSameAs(root);
+        }
+    }
+
+    @Test
+    @DisplayName("test that the next live node is found after the head it was previously linked to is removed")
+    void test_getHead_findsNextHeadAfterRemoval() {
+        var root = new PropertiesNode(null, new Properties());
+        var middle = new PropertiesNode(root, new Properties());
+        var leaf = new PropertiesNode(middle, new Properties());
+
+        leaf.remove();
+        assertThat(leaf.getHead()).isSameAs(middle);
+
+        middle.remove();
+        assertThat(leaf.getHead()).isSameAs(root);
+
+        root.remove();
+        assertThat(leaf.getHead()).isNull();
+    }
+
+    @Test
+    @DisplayName("test that nodes inherited from a released node are re-based on private copies, keeping their writes")
+    void test_release_rebasesDerivedNodes() {
+        var root = new PropertiesNode(null, new Properties());
+        var test = new PropertiesNode(root, new Properties());
+        test.getWritableProperties().setProperty("nut", "almond");
+        var pooled = new PropertiesNode(test);
+        var spawned = new PropertiesNode(pooled);
+        var releasedNodes = PropertiesNode.getReleasedNodes();
+        var releasedProperties = PropertiesNode.getReleasedProperties();
+
+        root.getWritableProperties().setProperty("colour", "red");
+        pooled.getWritableProperties().setProperty("fruit", "apple");
+        PropertiesLayer.snapshotOf(pooled.getProperties());
+        pooled.getWritableProperties().setProperty("vegetable", "potato");
+        spawned.getWritableProperties().setProperty("vegetable", "carrot");
+        test.release();
+
+        assertThat(pooled.getProperties()).containsOnlyKeys("colour", "fruit", "vegetable")
+                .containsEntry("vegetable", "potato");
+        assertThat(spawned.getProperties()).containsOnlyKeys("colour", "vegetable")
+                .containsEntry("vegetable", "carrot");
+        assertThat(PropertiesNode.getReleasedNodes() - releasedNodes).isGreaterThanOrEqualTo(2);
+        assertThat(PropertiesNode.getReleasedProperties() - releasedProperties).isGreaterThanOrEqualTo(2);
+
+        pooled.getWritableProperties().setProperty("fruit", "banana");
+        spawned.getWritableProperties().setProperty("colour", "green");
+
+        assertThat(root.getProperties()).containsOnlyKeys("colour").containsEntry("colour", "red");
+        assertThat(pooled.getProperties()).containsEntry("fruit", "banana").containsEntry("colour", "red");
+        assertThat(spawned.getProperties()).doesNotContainKey("fruit").containsEntry("colour", "green");
+    }
+
+    @Test
+    @DisplayName("test that nodes inherited from a removed node keep its properties until the next node is released")
+    void test_remove_passesDerivedNodesOn() {
+        var root = new PropertiesNode(null, new Properties());
+        var test = new PropertiesNode(root, new Properties());
+        var scope = new PropertiesNode(test, new Properties());
+        scope.getWritableProperties().setProperty("fruit", "banana");
+        var task = new PropertiesNode(scope);
+        task.getWritableProperties().setProperty("vegetable", "carrot");
+
+        scope.remove();
+        task.getWritableProperties().setProperty("nut", "almond");
+
+        assertThat(task.getProperties()).containsOnlyKeys("fruit", "vegetable", "nut");
+
+        var releasedNodes = PropertiesNode.getReleasedNodes();
+        test.release();
+
+        assertThat(PropertiesNode.getReleasedNodes() - releasedNodes).isGreaterThanOrEqualTo(1);
+        assertThat(task.getProperties()).containsOnlyKeys("vegetable", "nut");
+    }
+
+    @Test
+    @DisplayName("test that a node inherited from an already removed node is released with the next live node")
+    void test_release_releasesNodesInheritedPastRemovedNodes() {
+        var root = new PropertiesNode(null, new Properties());
+        var test = new PropertiesNode(root, new Properties());
+        test.remove();
+
+        var pooled = new PropertiesNode(test);
+        var releasedNodes = PropertiesNode.getReleasedNodes();
+
+        assertThat(pooled.getHead()).isSameAs(pooled);
+        root.release();
+        assertThat(PropertiesNode.getReleasedNodes() - releasedNodes).isGreaterThanOrEqualTo(1);
+
+        pooled.getWritableProperties().setProperty("fruit", "apple");
+        assertThat(pooled.getHead()).isSameAs(pooled);
+        assertThat(root.getProperties()).doesNotContainKey("fruit");
+    }
+
+    @Test
+    @DisplayName("test that a node holding a snapshot only gets writable properties when they are asked for")
+    void test_getWritableProperties_layersSnapshotOnFirstWrite() {
+        var snapshot = PropertiesLayer.snapshotOf(new Properties());
+        var node = new PropertiesNode(null, snapshot);
+
+        assertThat(node.getProperties()).isSameAs(snapshot);
+
+        var writableProperties = node.getWritableProperties();
+        writableProperties.setProperty("fruit", "apple");
+
+        assertThat(writableProperties).isNotSameAs(snapshot);
+        assertThat(node.getProperties()).isSameAs(writableProperties);
+        assertThat(node.getWritableProperties()).isSameAs(writableProperties);
+        assertThat(snapshot).isEmpty();
+    }
+
+    @Test
+    @DisplayName("test that removing properties on the same thread that added them restores the previous head")
+    void test_removeProperties_restoresPreviousHead() {
+        var threadLocalProperties = new ThreadLocalProperties();
+        var classProperties = new Properties();
+        var methodProperties = new Properties();
+
+        threadLocalProperties.addProperties(classProperties);
+        threadLocalProperties.addProperties(methodProperties);
+        assertThat(threadLocalProperties.getProperties()).isSameAs(methodProperties);
+
+        threadLocalProperties.removeProperties();
+        assertThat(threadLocalProperties.getProperties()).isSameAs(classProperties);
+
+        threadLocalProperties.removeProperties();
+        assertThat(threadLocalProperties.getProperties()).isSameAs(SystemSafeExtension.getSharedSystemProperties());
+        assertThat(threadLocalProperties.get().getHead()).isNull();
+    }
+
+    @Test
+    @DisplayName("test that a tree started with properties of its own falls back to them once every node is removed")
+    void test_removeProperties_fallsBackToRootOfTree() {
+        var root = new Properties();
+        root.setProperty("fruit", "apple");
+        var threadLocalProperties = new ThreadLocalProperties(root);
+
+        threadLocalProperties.addProperties(new Properties());
+        threadLocalProperties.removeProperties();
+        threadLocalProperties.removeProperties();
+
+        assertThat(threadLocalProperties.getProperties()).isSameAs(root);
+        assertThat(threadLocalProperties.getWritableProperties()).isSameAs(root);
+        assertThat(threadLocalProperties.inherit().getProperties()).containsOnlyKeys("fruit");
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(SystemSafeExtension.class)
+@DisplayName("Test how System Properties are loaded from files")
+@SystemPropertiesSource("classpath:fruit.properties")
+class SourceTest {
+
+    private static final String EDITED_SOURCE = "build/tmp/systemsafe/edited.properties";
+    private static final String CHECKED_SOURCE = "build/tmp/systemsafe/checked.properties";
+
+    @Test
+    @DisplayName("test that the files of the test class are loaded for every test")
+    void test_classSources_areLoaded() {
+        assertThat(System.getProperty("fruit")).isEqualTo("apple");
+        assertThat(System.getProperty("colour")).isEqualTo("red");
+        assertThat(System.getProperty("vegetable")).isNull();
+    }
+
+    @RepeatedTest(10)
+    @DisplayName("test that later files and annotations override earlier files")
+    @SystemPropertiesSource({"classpath:fruit.properties", "classpath:vegetables.xml"})
+    @SystemProperty(key = "fruit", value = "banana")
+    void test_methodSources_overrideClassSources() {
+        assertThat(System.getProperty("fruit")).isEqualTo("banana");
+        assertThat(System.getProperty("vegetable")).isEqualTo("carrot");
+        assertThat(System.getProperty("colour")).isEqualTo("orange");
+
+        System.setProperty("colour", "purple");
+        assertThat(System.getProperty("colour")).isEqualTo("purple");
+    }
+
+    @Test
+    @DisplayName("test that a file is only parsed again once it has been modified")
+    void test_load_parsesModifiedFilesAgain(@TempDir final Path directory) throws IOException {
+        var file = directory.resolve("test.properties");
+        Files.writeString(file, "fruit=apple");
+
+        var loaded = PropertiesSources.load(file.toString());
+        assertThat(PropertiesSources.load(file.toString())).isSameAs(loaded);
+
+        Files.writeString(file, "fruit=banana");
+        var modified = Files.getLastModifiedTime(file).toMillis() + 1000;
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified));
+
+        assertThat(loaded.getProperty("fruit")).isEqualTo("apple");
+        assertThat(PropertiesSources.load(file.toString()).getProperty("fruit")).isEqualTo("banana");
+    }
+
+    @Test
+    @DisplayName("test that the overlays of an annotated method are rebuilt once one of its files has been modified")
+    void test_overlays_loadModifiedFilesAgain() throws IOException, NoSuchMethodException {
+        var file = Path.of(EDITED_SOURCE);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "fruit=apple");
+        var method = SourceTest.class.getDeclaredMethod("editedSource");
+
+        var overlays = SystemPropertyOverlays.of(method);
+        assertThat(SystemPropertyOverlays.of(method)).isSameAs(overlays);
+
+        Files.writeString(file, "fruit=banana");
+        var modified = Files.getLastModifiedTime(file).toMillis() + 1000;
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified));
+
+        var rebuilt = SystemPropertyOverlays.of(method);
+        assertThat(rebuilt).isNotSameAs(overlays).hasSize(2);
+        assertThat(rebuilt.get(0)).containsEntry("fruit", "banana");
+        assertThat(rebuilt.get(1)).containsEntry("colour", "yellow");
+        assertThat(SystemPropertyOverlays.of(method)).isSameAs(rebuilt);
+    }
+
+    @Test
+    @DisplayName("test that the files of an annotated method are only checked for changes with a new token")
+    void test_overlays_onlyCheckFilesWithNewToken() throws IOException, NoSuchMethodException {
+        var file = Path.of(CHECKED_SOURCE);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "fruit=apple");
+        var method = SourceTest.class.getDeclaredMethod("checkedSource");
+        var check = new Object();
+
+        var overlays = SystemPropertyOverlays.of(method, check);
+
+        Files.writeString(file, "fruit=banana");
+        var modified = Files.getLastModifiedTime(file).toMillis() + 1000;
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified));
+
+        assertThat(SystemPropertyOverlays.of(method, check)).isSameAs(overlays);
+        assertThat(SystemPropertyOverlays.of(method, new Object()).get(0)).containsEntry("fruit", "banana");
+    }
+
+    @Test
+    @DisplayName("test that a missing file cannot be loaded")
+    void test_load_rejectsMissingFiles() {
+        assertThatThrownBy(() -> PropertiesSources.load("classpath:missing.properties"))
+                .isInstanceOf(ExtensionConfigurationException.class)
+                .hasMessageContaining("missing.properties");
+    }
+
+    @SystemPropertiesSource(EDITED_SOURCE)
+    @SystemProperty(key = "colour", value = "yellow")
+    private void editedSource() {
+    }
+
+    @SystemPropertiesSource(CHECKED_SOURCE)
+    private void checkedSource() {
+    }
+}
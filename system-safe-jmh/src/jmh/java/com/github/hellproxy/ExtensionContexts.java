@@ -0,0 +1,131 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ExtensionContext.Namespace;
+import org.junit.jupiter.api.extension.ExtensionContext.Store;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static java.lang.reflect.Proxy.newProxyInstance;
+
+/**
+ * Creates lightweight {@link ExtensionContext} instances, so that the {@link SystemSafeExtension} lifecycle can be
+ * benchmarked without starting a JUnit engine. Stores are backed by plain maps and fall through to the parent
+ * context's store, like JUnit's own stores. Configuration parameters are those of the root context. Any other method
+ * returning an {@link Optional} returns an empty one.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+final class ExtensionContexts {
+
+    private ExtensionContexts() {
+    }
+
+    /**
+     * The configuration parameter that enables parallel test execution, which decides how tests are isolated.
+     */
+    static final String PARALLEL_PARAMETER = "junit.jupiter.execution.parallel.enabled";
+
+    /**
+     * Creates a root context, such as the one for a test class, with tests executed in parallel.
+     *
+     * @param uniqueId the unique ID of the context.
+     * @return a new {@code ExtensionContext}.
+     */
+    static ExtensionContext create(final String uniqueId) {
+        return create(uniqueId, Map.of(PARALLEL_PARAMETER, "true"));
+    }
+
+    /**
+     * Creates a root context, such as the one for a test class.
+     *
+     * @param uniqueId   the unique ID of the context.
+     * @param parameters the configuration parameters of the test run.
+     * @return a new {@code ExtensionContext}.
+     */
+    static ExtensionContext create(final String uniqueId, final Map<String, String> parameters) {
+        return create(null, uniqueId, parameters);
+    }
+
+    /**
+     * Creates a context nested in another, such as the one for a test method.
+     *
+     * @param parent   the outer context, or {@code null} for a root context.
+     * @param uniqueId the unique ID of the context.
+     * @return a new {@code ExtensionContext}.
+     */
+    static ExtensionContext create(final ExtensionContext parent, final String uniqueId) {
+        return create(parent, uniqueId, Map.of());
+    }
+
+    private static ExtensionContext create(final ExtensionContext parent,
+                                           final String uniqueId,
+                                           final Map<String, String> parameters) {
+        Map<Namespace, Store> stores = new ConcurrentHashMap<>();
+        var parentContext = Optional.ofNullable(parent);
+
+        return (ExtensionContext) newProxyInstance(
+                ExtensionContext.class.getClassLoader(),
+                new Class<?>[]{ExtensionContext.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getStore":
+                            return stores.computeIfAbsent((Namespace) args[0], namespace ->
+                                    createStore(parent != null ? parent.getStore(namespace) : null));
+                        case "getParent":
+                            return parentContext;
+                        case "getRoot":
+                            return parent != null ? parent.getRoot() : proxy;
+                        case "getConfigurationParameter":
+                            return parent != null
+                                    ? parent.getConfigurationParameter((String) args[0])
+                                    : Optional.ofNullable(parameters.get(args[0]));
+                        case "getUniqueId":
+                        case "getDisplayName":
+                        case "toString":
+                            return uniqueId;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return emptyOrUnsupported(method);
+                    }
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Store createStore(final Store parent) {
+        Map<Object, Object> values = new ConcurrentHashMap<>();
+
+        return (Store) newProxyInstance(
+                Store.class.getClassLoader(),
+                new Class<?>[]{Store.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "put":
+                            values.put(args[0], args[1]);
+                            return null;
+                        case "get":
+                            var value = values.get(args[0]);
+                            return value != null || parent == null ? value : parent.get(args[0]);
+                        case "remove":
+                            return values.remove(args[0]);
+                        case "getOrComputeIfAbsent":
+                            return values.computeIfAbsent(args[0], key -> ((Function<Object, ?>) args[1]).apply(key));
+                        default:
+                            return emptyOrUnsupported(method);
+                    }
+                });
+    }
+
+    private static Object emptyOrUnsupported(final Method method) {
+        if (method.getReturnType() == Optional.class) return Optional.empty();
+        throw new UnsupportedOperationException(method.getName());
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.hellproxy.SystemPropertiesState.KEY;
+import static com.github.hellproxy.SystemPropertiesState.VALUE;
+
+/**
+ * Measures a full {@code beforeEach}/{@code afterEach} cycle of {@link SystemSafeExtension}, for a test that does not
+ * touch System Properties and for one that sets a single property. The baseline is what it costs to isolate a test by
+ * cloning a plain {@link java.util.Properties} instance.
+ * <p>
+ * With {@code parallel} set to {@code false}, the extension keeps an undo log of the benchmark thread's properties
+ * instead of adding a layer for each test. Like JUnit's own sequential mode, that is only meant for a single thread.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ExtensionLifecycleBenchmark {
+
+    @Param({"true", "false"})
+    public String parallel;
+
+    private ExtensionContext classContext;
+    private ExtensionContext methodContext;
+
+    @Setup(Level.Trial)
+    public void setUp(final SystemPropertiesState system) {
+        classContext = ExtensionContexts.create(
+                "[class:ExtensionLifecycleBenchmark]", Map.of(ExtensionContexts.PARALLEL_PARAMETER, parallel));
+        methodContext = ExtensionContexts.create(classContext, "[method:test]");
+
+        system.extension.beforeAll(classContext);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(final SystemPropertiesState system) {
+        system.extension.afterAll(classContext);
+    }
+
+    @Benchmark
+    public void emptyTest(final SystemPropertiesState system) {
+        system.extension.beforeEach(methodContext);
+        system.extension.afterEach(methodContext);
+    }
+
+    @Benchmark
+    public void setPropertyTest(final SystemPropertiesState system) {
+        system.extension.beforeEach(methodContext);
+        System.setProperty(KEY, VALUE);
+        system.extension.afterEach(methodContext);
+    }
+
+    @Benchmark
+    public Object rawClone(final SystemPropertiesState system) {
+        return system.rawProperties.clone();
+    }
+}
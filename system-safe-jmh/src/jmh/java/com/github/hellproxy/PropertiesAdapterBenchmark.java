@@ -0,0 +1,40 @@
+package com.github.hellproxy;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.hellproxy.SystemPropertiesState.*;
+
+/**
+ * Measures getting and setting System Properties through {@link PropertiesAdapter}, from within a test context,
+ * against doing the same with a plain, shared {@link java.util.Properties} instance. Run with {@code -PjmhThreads=N}
+ * to measure with {@code N} threads.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PropertiesAdapterBenchmark {
+
+    @Benchmark
+    public String adapterGetProperty(final TestContextState test) {
+        return System.getProperty(EXISTING_KEY);
+    }
+
+    @Benchmark
+    public String adapterSetProperty(final TestContextState test) {
+        return System.setProperty(KEY, VALUE);
+    }
+
+    @Benchmark
+    public String rawGetProperty(final SystemPropertiesState system) {
+        return system.rawProperties.getProperty(EXISTING_KEY);
+    }
+
+    @Benchmark
+    public Object rawSetProperty(final SystemPropertiesState system) {
+        return system.rawProperties.setProperty(KEY, VALUE);
+    }
+}
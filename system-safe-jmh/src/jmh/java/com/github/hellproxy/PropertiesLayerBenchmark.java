@@ -0,0 +1,71 @@
+package com.github.hellproxy;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.hellproxy.SystemPropertiesState.EXISTING_KEY;
+import static com.github.hellproxy.SystemPropertiesState.KEY;
+
+/**
+ * Measures reading through a writable layer that sits on top of {@code depth} snapshots, as it would after a test
+ * spawns threads or its properties are snapshotted repeatedly, against reading from a plain {@link Properties}
+ * instance. Frozen layers remember the values they resolve, so reads should cost the same at any depth. Iteration
+ * streams across the layers, so it should allocate no more than iterating a plain {@code Properties} instance does.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PropertiesLayerBenchmark {
+
+    @Param({"1", "8", "64"})
+    public int depth;
+
+    private Properties properties;
+    private PropertiesLayer layer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        properties = (Properties) System.getProperties().clone();
+
+        layer = PropertiesLayer.over(FrozenProperties.copyOf(properties));
+        for (var i = 0; i < depth; i++) {
+            layer.setProperty("benchmark.layer." + i, "value-" + i);
+            layer = PropertiesLayer.over(layer);
+        }
+    }
+
+    @Benchmark
+    public String layerGetExistingProperty() {
+        return layer.getProperty(EXISTING_KEY);
+    }
+
+    @Benchmark
+    public String layerGetMissingProperty() {
+        return layer.getProperty(KEY);
+    }
+
+    @Benchmark
+    public String rawGetExistingProperty() {
+        return properties.getProperty(EXISTING_KEY);
+    }
+
+    @Benchmark
+    public void layerIterate(final Blackhole blackhole) {
+        for (var entry : layer.entrySet()) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void rawIterate(final Blackhole blackhole) {
+        for (var entry : properties.entrySet()) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+}
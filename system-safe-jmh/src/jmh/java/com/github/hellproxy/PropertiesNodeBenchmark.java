@@ -0,0 +1,90 @@
+package com.github.hellproxy;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.hellproxy.SystemPropertiesState.KEY;
+import static com.github.hellproxy.SystemPropertiesState.VALUE;
+
+/**
+ * Measures finding the head of a properties tree, when there are {@code depth - 1} removed nodes above it, against
+ * reading from a plain {@link Properties} instance.
+ * <p>
+ * The first lookup through a chain of removed nodes links them all straight to the head, so every later lookup only
+ * has a single link to follow, whatever the depth. {@link #getHead(Chain)} and {@link #nodeGetProperty(Chain)} are
+ * therefore given a new chain, that has never been walked, for every invocation, which adds some noise to the timings
+ * of the shallowest chains. {@link #getCompressedHead()} measures the lookups that follow, once a chain has been
+ * compressed.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PropertiesNodeBenchmark {
+
+    private Properties properties;
+    private PropertiesNode compressedNode;
+
+    /**
+     * A chain of removed nodes that is built again before each invocation, since walking it compresses it.
+     */
+    @State(Scope.Thread)
+    public static class Chain {
+
+        @Param({"1", "10", "100", "1000"})
+        public int depth;
+
+        PropertiesNode node;
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            node = chainOf(depth, properties());
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        properties = properties();
+        compressedNode = chainOf(1000, properties);
+        compressedNode.getHead();
+    }
+
+    @Benchmark
+    public PropertiesNode getHead(final Chain chain) {
+        return chain.node.getHead();
+    }
+
+    @Benchmark
+    public String nodeGetProperty(final Chain chain) {
+        return chain.node.getProperties().getProperty(KEY);
+    }
+
+    @Benchmark
+    public PropertiesNode getCompressedHead() {
+        return compressedNode.getHead();
+    }
+
+    @Benchmark
+    public String rawGetProperty() {
+        return properties.getProperty(KEY);
+    }
+
+    private static Properties properties() {
+        var properties = new Properties();
+        properties.setProperty(KEY, VALUE);
+        return properties;
+    }
+
+    private static PropertiesNode chainOf(final int depth, final Properties properties) {
+        var node = new PropertiesNode(null, properties);
+        for (var i = 1; i < depth; i++) {
+            node = new PropertiesNode(node, new Properties());
+            node.remove();
+        }
+        return node;
+    }
+}
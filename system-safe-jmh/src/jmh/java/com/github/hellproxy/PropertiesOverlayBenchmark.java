@@ -0,0 +1,46 @@
+package com.github.hellproxy;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.hellproxy.SystemPropertiesState.*;
+
+/**
+ * Measures opening and closing the scopes of a {@link PropertiesOverlay} from within a test context. The scopes of an
+ * empty overlay should allocate nothing unless they are written to, so run with {@code -prof gc} to check that
+ * {@link #emptyOverlayRead} allocates no bytes per operation.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class PropertiesOverlayBenchmark {
+
+    private final PropertiesOverlay emptyOverlay = SystemSafe.with(Map.of());
+    private final PropertiesOverlay overlay = SystemSafe.with(Map.of(KEY, VALUE));
+
+    @Benchmark
+    public String emptyOverlayRead(final TestContextState test) {
+        try (var scope = emptyOverlay.open()) {
+            return System.getProperty(EXISTING_KEY);
+        }
+    }
+
+    @Benchmark
+    public Object emptyOverlayWrite(final TestContextState test) {
+        try (var scope = emptyOverlay.open()) {
+            return System.setProperty(KEY, VALUE);
+        }
+    }
+
+    @Benchmark
+    public String overlayRead(final TestContextState test) {
+        try (var scope = overlay.open()) {
+            return System.getProperty(EXISTING_KEY);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.hellproxy;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+
+/**
+ * Benchmark-wide state that installs {@link SystemSafeExtension}. The System Properties can be padded out with extra
+ * properties beforehand, to reflect test suites that run with large sets of System Properties.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+@State(Scope.Benchmark)
+public class SystemPropertiesState {
+
+    static final String EXISTING_KEY = "java.version";
+    static final String KEY = "benchmark.key";
+    static final String VALUE = "benchmark.value";
+
+    @Param({"0", "1000"})
+    public int extraProperties;
+
+    /**
+     * A plain copy of the System Properties, used as a baseline. It is shared between threads, just like the System
+     * Properties would be without {@code SystemSafeExtension}.
+     */
+    Properties rawProperties;
+
+    SystemSafeExtension extension;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (var i = 0; i < extraProperties; i++) {
+            System.setProperty("benchmark.generated." + i, "value-" + i);
+        }
+
+        rawProperties = (Properties) System.getProperties().clone();
+        extension = new SystemSafeExtension();
+    }
+}
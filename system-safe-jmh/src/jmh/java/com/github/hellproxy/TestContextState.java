@@ -0,0 +1,36 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.openjdk.jmh.annotations.*;
+
+import static java.lang.String.format;
+
+/**
+ * Per-thread state that puts each benchmark thread inside its own test method context, as if every benchmark thread
+ * was running a test of its own.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+@State(Scope.Thread)
+public class TestContextState {
+
+    ExtensionContext classContext;
+    ExtensionContext methodContext;
+
+    @Setup(Level.Trial)
+    public void setUp(final SystemPropertiesState system) {
+        var threadId = Thread.currentThread().getId();
+        classContext = ExtensionContexts.create(format("[class:Benchmark-%d]", threadId));
+        methodContext = ExtensionContexts.create(classContext, format("[method:benchmark-%d]", threadId));
+
+        system.extension.beforeAll(classContext);
+        system.extension.beforeEach(methodContext);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(final SystemPropertiesState system) {
+        system.extension.afterEach(methodContext);
+        system.extension.afterAll(classContext);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.hellproxy;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.hellproxy.SystemPropertiesState.KEY;
+import static com.github.hellproxy.SystemPropertiesState.VALUE;
+
+/**
+ * Measures what it costs for a child thread to inherit its parent's place in a properties tree, against cloning a
+ * plain {@link java.util.Properties} instance. Also measures starting a thread from within a test context, against
+ * starting one from outside of it.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ThreadLocalPropertiesBenchmark {
+
+    private static final Runnable NO_OP = () -> {
+    };
+
+    private final ThreadLocalProperties threadLocalProperties = new ThreadLocalProperties();
+
+    private PropertiesNode parent;
+
+    @Setup(Level.Trial)
+    public void setUp(final SystemPropertiesState system) {
+        parent = new PropertiesNode(null, PropertiesLayer.over(system.rawProperties));
+        parent.getProperties().setProperty(KEY, VALUE);
+    }
+
+    @Benchmark
+    public PropertiesNode childValue() {
+        return threadLocalProperties.childValue(parent);
+    }
+
+    @Benchmark
+    public Object rawClone(final SystemPropertiesState system) {
+        return system.rawProperties.clone();
+    }
+
+    @Benchmark
+    public void startThreadInTestContext(final TestContextState test) throws InterruptedException {
+        startThread();
+    }
+
+    @Benchmark
+    public void rawStartThread() throws InterruptedException {
+        startThread();
+    }
+
+    private static void startThread() throws InterruptedException {
+        var thread = new Thread(NO_OP);
+        thread.start();
+        thread.join();
+    }
+}
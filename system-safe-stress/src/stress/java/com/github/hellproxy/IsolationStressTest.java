@@ -0,0 +1,136 @@
+package com.github.hellproxy;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import static java.lang.String.format;
+import static org.junit.jupiter.api.parallel.ExecutionMode.CONCURRENT;
+
+/**
+ * The workload of the stress tests. Each invocation is a test of its own, which reads, writes, computes and merges
+ * System Properties, some of which every invocation shares, and spawns child threads that do the same. Any value that
+ * one invocation sees another invocation's changes in fails it.
+ *
+ * @author Harry Dent
+ * @see StressHarness
+ * @since 1.1
+ */
+@ExtendWith(SystemSafeExtension.class)
+@Execution(CONCURRENT)
+class IsolationStressTest {
+
+    private static final String CLASS_KEY = "stress.class";
+    private static final String CLASS_VALUE = "class";
+    private static final String SHARED_KEY = "stress.shared";
+    private static final String COUNTER_KEY = "stress.counter";
+    private static final String MERGED_KEY = "stress.merged";
+    private static final String OWN_KEY = "stress.own.";
+
+    /**
+     * How many times each invocation repeats its operations.
+     */
+    private static final int ROUNDS = 8;
+
+    private static volatile int invocations = 1000;
+
+    /**
+     * Sets how many invocations the next run of the stress tests is made up of.
+     *
+     * @param count the number of invocations.
+     */
+    static void setInvocations(final int count) {
+        invocations = count;
+    }
+
+    static IntStream invocations() {
+        return IntStream.range(0, invocations);
+    }
+
+    @BeforeAll
+    static void beforeAll() {
+        System.setProperty(CLASS_KEY, CLASS_VALUE);
+    }
+
+    @ParameterizedTest
+    @MethodSource("invocations")
+    void test(final int id) throws InterruptedException {
+        var properties = System.getProperties();
+        var value = Integer.toString(id);
+        var ownKey = OWN_KEY + id;
+        var otherKey = OWN_KEY + (id + 1);
+        var merged = new StringBuilder();
+
+        for (var round = 1; round <= ROUNDS; round++) {
+            var start = System.nanoTime();
+            System.setProperty(SHARED_KEY, value);
+            Operation.WRITE.record(start);
+            System.setProperty(ownKey, Integer.toString(round));
+
+            start = System.nanoTime();
+            var shared = System.getProperty(SHARED_KEY);
+            Operation.READ.record(start);
+            expect(shared, value, SHARED_KEY);
+            expect(System.getProperty(CLASS_KEY), CLASS_VALUE, CLASS_KEY);
+            expect(System.getProperty(otherKey), null, otherKey);
+
+            start = System.nanoTime();
+            var counter = properties.compute(COUNTER_KEY,
+                    (key, previous) -> previous == null ? "1" : increment((String) previous));
+            Operation.COMPUTE.record(start);
+            expect(counter, Integer.toString(round), COUNTER_KEY);
+
+            merged.append(merged.length() == 0 ? "" : ",").append(value);
+            start = System.nanoTime();
+            var merge = properties.merge(MERGED_KEY, value, (previous, next) -> previous + "," + next);
+            Operation.MERGE.record(start);
+            expect(merge, merged.toString(), MERGED_KEY);
+
+            start = System.nanoTime();
+            spawnChild(id, round);
+            Operation.SPAWN.record(start);
+            expect(System.getProperty(SHARED_KEY), value, SHARED_KEY);
+            expect(System.getProperty(ownKey), Integer.toString(round), ownKey);
+        }
+    }
+
+    /**
+     * Spawns a child thread that checks that it inherited this invocation's properties, then overwrites them, which
+     * must not be visible to this invocation.
+     */
+    private static void spawnChild(final int id, final int round) throws InterruptedException {
+        var failure = new AtomicReference<Throwable>();
+        var child = new Thread(() -> {
+            try {
+                expect(System.getProperty(SHARED_KEY), Integer.toString(id), SHARED_KEY);
+                expect(System.getProperty(COUNTER_KEY), Integer.toString(round), COUNTER_KEY);
+                System.setProperty(SHARED_KEY, "child");
+                System.setProperty(OWN_KEY + id, "child");
+                System.getProperties().compute(COUNTER_KEY, (key, previous) -> increment((String) previous));
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        child.start();
+        child.join();
+
+        if (failure.get() != null) throw new AssertionError("Child thread failed", failure.get());
+    }
+
+    private static String increment(final String value) {
+        return Integer.toString(Integer.parseInt(value) + 1);
+    }
+
+    private static void expect(final Object actual, final Object expected, final String key) {
+        if (!Objects.equals(actual, expected)) {
+            throw new AssertionError(format("System Property '%s' leaked: expected '%s', but was '%s'",
+                    key, expected, actual));
+        }
+    }
+}
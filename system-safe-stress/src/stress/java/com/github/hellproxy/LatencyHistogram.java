@@ -0,0 +1,99 @@
+package com.github.hellproxy;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds. Each power of two is split into {@value #SUB_BUCKETS} buckets, so
+ * percentiles are reported to within an eighth of their true value, without keeping every sample.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency in nanoseconds.
+     */
+    void record(final long nanos) {
+        var value = Math.max(nanos, 0);
+        counts.incrementAndGet(indexOf(value));
+        max.accumulate(value);
+        total.add(value);
+    }
+
+    /**
+     * Gets how many latencies have been recorded.
+     *
+     * @return the number of latencies recorded so far.
+     */
+    long getCount() {
+        var count = 0L;
+        for (var i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Gets how many operations a single thread performs per second, on average, judging by the recorded latencies.
+     *
+     * @return the throughput per thread, or {@code 0} if no latencies have been recorded.
+     */
+    double getOpsPerSecond() {
+        var nanos = total.sum();
+        return nanos > 0 ? getCount() * 1e9 / nanos : 0;
+    }
+
+    /**
+     * Gets the highest latency recorded.
+     *
+     * @return the exact highest latency in nanoseconds, or {@code 0} if none have been recorded.
+     */
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets a percentile of the recorded latencies.
+     *
+     * @param percentile the percentile to get, between {@code 0} and {@code 100}.
+     * @return the upper bound of the bucket that the percentile falls in, in nanoseconds, or {@code 0} if no latencies
+     * have been recorded.
+     */
+    long getPercentile(final double percentile) {
+        var rank = (long) Math.ceil(getCount() * percentile / 100);
+        var seen = 0L;
+        for (var i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank && seen > 0) return Math.min(upperBoundOf(i), getMax());
+        }
+        return 0;
+    }
+
+    private static int indexOf(final long value) {
+        var exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        if (exponent < SUB_BUCKET_BITS) return (int) value;
+
+        var subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(final int index) {
+        if (index < SUB_BUCKETS) return index;
+
+        var shift = index / SUB_BUCKETS - 1;
+        var subBucket = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.hellproxy;
+
+/**
+ * The operations that {@link IsolationStressTest} performs on the System Properties, each with a histogram of its
+ * latencies.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+enum Operation {
+
+    /**
+     * {@link System#getProperty(String)}.
+     */
+    READ,
+
+    /**
+     * {@link System#setProperty(String, String)}.
+     */
+    WRITE,
+
+    /**
+     * {@link java.util.Properties#compute} on the System Properties.
+     */
+    COMPUTE,
+
+    /**
+     * {@link java.util.Properties#merge} on the System Properties.
+     */
+    MERGE,
+
+    /**
+     * Spawning a child thread that reads and writes the System Properties, and waiting for it to finish.
+     */
+    SPAWN;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /**
+     * Records how long an instance of this operation took.
+     *
+     * @param startNanos the value of {@link System#nanoTime()} when the operation started.
+     */
+    void record(final long startNanos) {
+        latencies.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gets the latencies recorded for this operation.
+     *
+     * @return the histogram of this operation's latencies.
+     */
+    LatencyHistogram getLatencies() {
+        return latencies;
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.hellproxy;
+
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.testkit.engine.EngineTestKit;
+import org.junit.platform.testkit.engine.Event;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+
+/**
+ * Runs {@link IsolationStressTest} through the {@link EngineTestKit}, with thousands of invocations executed
+ * concurrently, then reports the throughput and latency of each {@link Operation}. Throughput is reported per thread,
+ * from the time spent in each operation, since every operation is performed equally often. Exits with a non-zero status
+ * if any invocation saw another's properties, or if the System Properties seen outside of any test changed, so that it
+ * can be used as a regression gate:
+ * <pre>{@code
+ * ./gradlew :system-safe-stress:stress -PstressTests=10000 -PstressParallelism=32
+ * }</pre>
+ * The report is printed, and written as JSON to {@code system-safe-stress/build/reports/stress/results.json}.
+ *
+ * @author Harry Dent
+ * @since 1.1
+ */
+public final class StressHarness {
+
+    static final String TESTS_PROPERTY = "systemsafe.stress.tests";
+    static final String PARALLELISM_PROPERTY = "systemsafe.stress.parallelism";
+    static final String REPORT_PROPERTY = "systemsafe.stress.report";
+
+    /**
+     * How many failures to print, out of however many there are.
+     */
+    private static final int MAX_FAILURES_SHOWN = 10;
+
+    private StressHarness() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        var tests = Integer.getInteger(TESTS_PROPERTY, 5000);
+        var parallelism = Integer.getInteger(PARALLELISM_PROPERTY, 4 * Runtime.getRuntime().availableProcessors());
+        var report = Path.of(System.getProperty(REPORT_PROPERTY, "build/reports/stress/results.json"));
+        var propertiesBefore = new HashMap<>(System.getProperties());
+
+        IsolationStressTest.setInvocations(tests);
+        var start = System.nanoTime();
+        var events = EngineTestKit
+                .engine("junit-jupiter")
+                .configurationParameter("junit.jupiter.execution.parallel.enabled", "true")
+                .configurationParameter("junit.jupiter.execution.parallel.mode.default", "concurrent")
+                .configurationParameter("junit.jupiter.execution.parallel.config.strategy", "fixed")
+                .configurationParameter("junit.jupiter.execution.parallel.config.fixed.parallelism",
+                        Integer.toString(parallelism))
+                .selectors(selectClass(IsolationStressTest.class))
+                .execute()
+                .testEvents();
+        var seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        var succeeded = events.succeeded().count();
+        var failed = events.failed().count();
+        var leaked = !propertiesBefore.equals(new HashMap<>(System.getProperties()));
+
+        events.failed().stream().limit(MAX_FAILURES_SHOWN).forEach(StressHarness::printFailure);
+        if (leaked) System.err.println("System Properties outside of any test changed during the run");
+
+        var json = toJson(tests, parallelism, seconds, succeeded, failed, leaked);
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        Files.writeString(report, json);
+        System.out.println(toTable());
+        System.out.printf(Locale.ROOT, "%d of %d tests succeeded in %.2f s with %d threads, report written to %s%n",
+                succeeded, tests, seconds, parallelism, report);
+
+        if (succeeded != tests || leaked) System.exit(1);
+    }
+
+    private static void printFailure(final Event event) {
+        var cause = event.getPayload(TestExecutionResult.class).flatMap(TestExecutionResult::getThrowable);
+        System.err.println(event.getTestDescriptor().getDisplayName() + ": "
+                + cause.map(Throwable::toString).orElse("failed"));
+    }
+
+    private static String toTable() {
+        var table = new StringBuilder(format("%-8s %12s %12s %10s %10s %10s%n",
+                "op", "count", "ops/s", "p50 us", "p99 us", "max us"));
+        for (var operation : Operation.values()) {
+            var latencies = operation.getLatencies();
+            table.append(format(Locale.ROOT, "%-8s %12d %12.0f %10.1f %10.1f %10.1f%n",
+                    operation.name().toLowerCase(Locale.ROOT),
+                    latencies.getCount(),
+                    latencies.getOpsPerSecond(),
+                    micros(latencies.getPercentile(50)),
+                    micros(latencies.getPercentile(99)),
+                    micros(latencies.getMax())));
+        }
+        return table.toString();
+    }
+
+    private static String toJson(final int tests,
+                                 final int parallelism,
+                                 final double seconds,
+                                 final long succeeded,
+                                 final long failed,
+                                 final boolean leaked) {
+        var json = new StringBuilder(format(Locale.ROOT,
+                "{%n  \"tests\": %d,%n  \"parallelism\": %d,%n  \"seconds\": %.3f,%n  \"testsPerSecond\": %.0f,%n"
+                        + "  \"succeeded\": %d,%n  \"failed\": %d,%n  \"leaked\": %b,%n  \"operations\": {",
+                tests, parallelism, seconds, tests / seconds, succeeded, failed, leaked));
+        var operations = Operation.values();
+        for (var i = 0; i < operations.length; i++) {
+            var latencies = operations[i].getLatencies();
+            json.append(format(Locale.ROOT,
+                    "%n    \"%s\": {\"count\": %d, \"opsPerSecond\": %.0f, \"p50Micros\": %.1f, \"p99Micros\": %.1f, "
+                            + "\"maxMicros\": %.1f}%s",
+                    operations[i].name().toLowerCase(Locale.ROOT),
+                    latencies.getCount(),
+                    latencies.getOpsPerSecond(),
+                    micros(latencies.getPercentile(50)),
+                    micros(latencies.getPercentile(99)),
+                    micros(latencies.getMax()),
+                    i < operations.length - 1 ? "," : ""));
+        }
+        return json.append(format("%n  }%n}%n")).toString();
+    }
+
+    private static double micros(final long nanos) {
+        return nanos / 1000.0;
+    }
+}